@@ -0,0 +1,94 @@
+package net.tiramisu.mdp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.NumberFormat;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-call cost of CurrencyUtils.formatCurrency(Context, amount) against the previous implementation,
+ * which read the currency preference and built the rate map, Locale and NumberFormat on every call.
+ * Logged under the "CurrencyBenchmark" tag as average ns per call after a warm-up.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class CurrencyUtilsBenchmark {
+    private static final String TAG = "CurrencyBenchmark";
+    private static final double[] AMOUNTS = {-50_000, 1_234_567.5, 0, 99_999_999, -3_300};
+    private static final int WARMUP = 20_000;
+    private static final int MEASURED = 100_000;
+
+    private static volatile Object sink;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    @Test
+    public void formatCurrency_cachedVsPerCall() {
+        double before = nsPerCall(amount -> legacyFormat(context, amount));
+        double after = nsPerCall(amount -> CurrencyUtils.formatCurrency(context, amount));
+        Log.i(TAG, String.format(Locale.ROOT, "formatCurrency per-call=%.0f ns cached=%.0f ns (x%.1f)",
+                before, after, before / after));
+    }
+
+    private interface Formatter {
+        String format(double amount);
+    }
+
+    private static double nsPerCall(Formatter f) {
+        run(f, WARMUP);
+        long start = System.nanoTime();
+        run(f, MEASURED);
+        return (double) (System.nanoTime() - start) / MEASURED;
+    }
+
+    private static void run(Formatter f, int ops) {
+        for (int i = 0; i < ops; i++) sink = f.format(AMOUNTS[i % AMOUNTS.length]);
+    }
+
+    // CurrencyUtils.formatCurrency before the preference and formatters were cached ("auto" not covered)
+    private static String legacyFormat(Context ctx, double amountInVnd) {
+        SharedPreferences sp = ctx.getSharedPreferences("mdp_prefs", Context.MODE_PRIVATE);
+        String code = sp.getString("pref_currency", "VND").toUpperCase(Locale.ROOT);
+        Map<String, Double> rates = new HashMap<>();
+        rates.put("VND", 1.0);
+        rates.put("USD", 1.0 / 23000.0);
+        rates.put("EUR", 1.0 / 25000.0);
+        rates.put("CNY", 1.0 / 3300.0);
+        double converted = amountInVnd;
+        if (!"VND".equals(code)) {
+            Double r = rates.get(code);
+            if (r != null) converted = amountInVnd * r;
+        }
+        Locale locale;
+        switch (code) {
+            case "USD": locale = Locale.US; break;
+            case "EUR": locale = Locale.GERMANY; break;
+            case "CNY": locale = Locale.CHINA; break;
+            case "VND": locale = new Locale.Builder().setLanguage("vi").setRegion("VN").build(); break;
+            default: locale = Locale.getDefault(); break;
+        }
+        NumberFormat nf = NumberFormat.getCurrencyInstance(locale);
+        try {
+            nf.setCurrency(Currency.getInstance(code));
+        } catch (Exception ignored) {}
+        return nf.format(converted);
+    }
+}
@@ -0,0 +1,146 @@
+package net.tiramisu.mdp.db;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import net.tiramisu.mdp.model.BalanceEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The guarded balances updates BalanceReconciler relies on, run against Room's real SQL: a push or
+ * pull only lands while the row is still in the state it was read in.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BalanceDaoTest {
+    private static final double EPS = 1e-9;
+
+    private AppDatabase db;
+    private BalanceDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        dao = db.balanceDao();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void adjust_createsRowAndQueuesDeltaForSyncedUsers() {
+        assertNull(dao.get("u"));
+        dao.adjust("u", -30.0, true);
+        dao.adjust("local", -30.0, false);
+
+        BalanceEntity u = dao.get("u");
+        assertEquals(-30.0, u.balance, EPS);
+        assertEquals(-30.0, u.pendingDelta, EPS);
+        assertEquals(1, u.version);
+        BalanceEntity local = dao.get("local");
+        assertEquals(-30.0, local.balance, EPS);
+        assertEquals(0.0, local.pendingDelta, EPS);
+        assertEquals(Collections.singletonList("u"), dao.getPendingUserIds());
+    }
+
+    @Test
+    public void set_replacesPendingDeltaAndLaterDeltasWaitForIt() {
+        dao.adjust("u", -30.0, true);
+        dao.set("u", 500.0, true);
+        dao.adjust("u", 5.0, true);
+
+        BalanceEntity row = dao.get("u");
+        assertEquals(505.0, row.balance, EPS);
+        assertTrue(row.pendingSet);
+        // the pending set carries the absolute value, so the delta is not queued separately
+        assertEquals(0.0, row.pendingDelta, EPS);
+    }
+
+    @Test
+    public void markSetPushed_onlyClearsTheVersionThatWasPushed() {
+        dao.set("u", 500.0, true);
+        long pushed = dao.get("u").version;
+        dao.set("u", 600.0, true);
+
+        dao.markSetPushed("u", pushed);
+        assertTrue(dao.get("u").pendingSet);
+
+        dao.markSetPushed("u", dao.get("u").version);
+        BalanceEntity row = dao.get("u");
+        assertFalse(row.pendingSet);
+        assertEquals(600.0, row.balance, EPS);
+    }
+
+    @Test
+    public void markDeltaPushed_keepsDeltasAddedDuringThePush() {
+        dao.adjust("u", 50.0, true);
+        double pushed = dao.get("u").pendingDelta;
+        dao.adjust("u", -20.0, true);
+
+        dao.markDeltaPushed("u", pushed);
+        assertEquals(-20.0, dao.get("u").pendingDelta, EPS);
+
+        dao.markDeltaPushed("u", -20.0);
+        assertEquals(0.0, dao.get("u").pendingDelta, EPS);
+        assertTrue(dao.getPendingUserIds().isEmpty());
+    }
+
+    @Test
+    public void markDeltaPushed_isIgnoredWhileASetIsPending() {
+        dao.adjust("u", 50.0, true);
+        dao.set("u", 10.0, true);
+        dao.markDeltaPushed("u", 50.0);
+
+        BalanceEntity row = dao.get("u");
+        assertTrue(row.pendingSet);
+        assertEquals(0.0, row.pendingDelta, EPS);
+        assertEquals(10.0, row.balance, EPS);
+    }
+
+    @Test
+    public void applyPulled_landsOnlyOnAnUnchangedCleanRow() {
+        assertEquals(1, dao.storePulled("u", 100.0, 1_000L, 0));
+        BalanceEntity row = dao.get("u");
+        assertEquals(100.0, row.balance, EPS);
+        assertEquals(1_000L, row.syncedAt);
+
+        // a local change after the read moved the version: the pulled value is dropped
+        long seen = row.version;
+        dao.adjust("u", 10.0, false);
+        assertEquals(0, dao.applyPulled("u", 90.0, 2_000L, seen));
+        assertEquals(110.0, dao.get("u").balance, EPS);
+        assertEquals(1_000L, dao.get("u").syncedAt);
+
+        // a pending delta blocks the pull even at the current version
+        dao.adjust("u", 5.0, true);
+        assertEquals(0, dao.applyPulled("u", 90.0, 2_000L, dao.get("u").version));
+        assertEquals(115.0, dao.get("u").balance, EPS);
+
+        dao.markDeltaPushed("u", 5.0);
+        assertEquals(1, dao.applyPulled("u", 115.0, 3_000L, dao.get("u").version));
+        assertEquals(3_000L, dao.get("u").syncedAt);
+    }
+
+    @Test
+    public void applyPulled_isBlockedByAPendingSet() {
+        dao.set("u", 500.0, true);
+        assertEquals(0, dao.applyPulled("u", 100.0, 1_000L, dao.get("u").version));
+        assertEquals(500.0, dao.get("u").balance, EPS);
+    }
+}
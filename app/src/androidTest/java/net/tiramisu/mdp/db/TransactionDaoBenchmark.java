@@ -0,0 +1,174 @@
+package net.tiramisu.mdp.db;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import net.tiramisu.mdp.model.TransactionEntity;
+import net.tiramisu.mdp.model.TransactionRow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Throughput and heap numbers for DAO hot paths, logged under the "DaoBenchmark" tag.
+ * Uses an on-disk database so commit/fsync costs are included.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class TransactionDaoBenchmark {
+    private static final String TAG = "DaoBenchmark";
+    private static final String DB_NAME = "mdp_benchmark_db";
+
+    private Context context;
+    private AppDatabase db;
+    private TransactionDao dao;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        db = Room.databaseBuilder(context, AppDatabase.class, DB_NAME).build();
+        dao = db.transactionDao();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void insertThroughput_perRowVsBatch() {
+        for (int n : new int[]{1_000, 10_000, 100_000}) {
+            db.clearAllTables();
+            List<TransactionEntity> rows = makeRows("per-row", n);
+            long start = System.nanoTime();
+            for (TransactionEntity t : rows) dao.insert(t);
+            double perRow = rowsPerSecond(n, System.nanoTime() - start);
+
+            List<TransactionEntity> batch = makeRows("batch", n);
+            start = System.nanoTime();
+            List<Long> ids = dao.insertAll(batch);
+            double batched = rowsPerSecond(n, System.nanoTime() - start);
+
+            assertEquals(n, ids.size());
+            Log.i(TAG, String.format(Locale.ROOT, "insert n=%d per-row=%.0f rows/s batch=%.0f rows/s (x%.1f)",
+                    n, perRow, batched, batched / perRow));
+        }
+    }
+
+    @Test
+    public void listPageHeap_entityVsRow() {
+        final int pageSize = 50;
+        final int pages = 40;
+        List<TransactionEntity> rows = makeRows("heap", pageSize * pages);
+        // SmsReceiver stores the whole SMS body as the note
+        for (TransactionEntity t : rows) {
+            t.note = "TK 0123456789 -50,000VND luc " + t.timestamp + ". SD: 12,345,678VND. ND: thanh toan don hang " + t.title;
+        }
+        dao.insertAll(rows);
+
+        long before = usedHeap();
+        // every full row in one query, as the list used to load them
+        List<TransactionEntity> entities = dao.getByUserChunk("heap", Long.MAX_VALUE, Long.MAX_VALUE, pageSize * pages);
+        long entityBytes = usedHeap() - before;
+
+        before = usedHeap();
+        List<List<TransactionRow>> rowPages = new ArrayList<>();
+        long ts = Long.MAX_VALUE, id = Long.MAX_VALUE;
+        for (int i = 0; i < pages; i++) {
+            List<TransactionRow> page = dao.getPageNewestFirst("heap", null, Long.MIN_VALUE, Long.MAX_VALUE, ts, id, pageSize);
+            rowPages.add(page);
+            TransactionRow last = page.get(page.size() - 1);
+            ts = last.timestamp;
+            id = last.id;
+        }
+        long rowBytes = usedHeap() - before;
+
+        assertEquals(entities.size(), rowPages.size() * pageSize);
+        Log.i(TAG, String.format(Locale.ROOT, "heap per %d-row page: entity=%d B row=%d B (saved %d B)",
+                pageSize, entityBytes / pages, rowBytes / pages, (entityBytes - rowBytes) / pages));
+    }
+
+    // First-page latency of what the transactions screen runs per (debounced) search or filter change.
+    // Rows per user grow, the page query should not: FTS narrows the ids and the index keeps the order.
+    @Test
+    public void searchPageLatency_10kAnd100k() {
+        final int pageSize = 50;
+        final int repeats = 20;
+        for (int n : new int[]{10_000, 100_000}) {
+            db.clearAllTables();
+            dao.insertAll(makeRows("search", n));
+
+            long[] typeOnly = new long[repeats];
+            long[] broad = new long[repeats];
+            long[] narrow = new long[repeats];
+            for (int i = -1; i < repeats; i++) {
+                long start = System.nanoTime();
+                List<TransactionRow> a = dao.getPageNewestFirst("search", "expense", Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, pageSize);
+                long t1 = System.nanoTime();
+                // "an*" matches every "Ăn uống" row through the diacritics-folding tokenizer
+                List<TransactionRow> b = dao.searchPageNewestFirst("search", null, "an*", Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, pageSize);
+                long t2 = System.nanoTime();
+                List<TransactionRow> c = dao.searchPageNewestFirst("search", null, "row* 4242*", Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, pageSize);
+                long t3 = System.nanoTime();
+                assertEquals(pageSize, a.size());
+                assertEquals(pageSize, b.size());
+                assertFalse(c.isEmpty());
+                if (i < 0) continue; // warm-up
+                typeOnly[i] = t1 - start;
+                broad[i] = t2 - t1;
+                narrow[i] = t3 - t2;
+            }
+            Log.i(TAG, String.format(Locale.ROOT, "search page n=%d type-filter %s | broad match %s | narrow match %s",
+                    n, latency(typeOnly), latency(broad), latency(narrow)));
+        }
+    }
+
+    private static String latency(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format(Locale.ROOT, "p50=%.2fms max=%.2fms",
+                sorted[sorted.length / 2] / 1_000_000.0, sorted[sorted.length - 1] / 1_000_000.0);
+    }
+
+    // Approximate live heap after a few GC passes; good enough for differences of kilobytes
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            rt.gc();
+            rt.runFinalization();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static List<TransactionEntity> makeRows(String userId, int n) {
+        List<TransactionEntity> rows = new ArrayList<>(n);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            boolean income = i % 4 == 0;
+            rows.add(new TransactionEntity(userId, income ? "income" : "expense", income ? 5_000_000 : -50_000 - i,
+                    "benchmark row " + i, income ? "Thu nhập" : "Ăn uống", "Row " + i, now - i * 60_000L));
+        }
+        return rows;
+    }
+
+    private static double rowsPerSecond(int n, long nanos) {
+        return n / (nanos / 1_000_000_000.0);
+    }
+}
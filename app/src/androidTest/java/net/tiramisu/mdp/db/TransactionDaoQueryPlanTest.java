@@ -0,0 +1,147 @@
+package net.tiramisu.mdp.db;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs EXPLAIN QUERY PLAN over the DAOs' own @Query constants and fails if one of them regresses
+ * to a full table scan, or (for the paged / ordered-LIMIT reads) to sorting its matches in a temp
+ * B-tree. Parameters are left unbound (NULL); the plan depends on the SQL, not the values.
+ * Not listed: BalanceDao.ENSURE_ROW (plain INSERT, no read), BalanceDao.GET_PENDING_USER_IDS
+ * (scans balances, which holds one row per signed-in account) and RollupSql.CLEAR/REBUILD
+ * (deliberate full passes).
+ */
+@RunWith(AndroidJUnit4.class)
+public class TransactionDaoQueryPlanTest {
+    private AppDatabase db;
+    private SupportSQLiteDatabase sqlite;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        sqlite = db.getOpenHelper().getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void newest_walksIndexInOrder() {
+        assertIndexOrdered(TransactionDao.GET_NEWEST);
+        assertIndexOrdered(TransactionDao.OBSERVE_NEWEST);
+    }
+
+    @Test
+    public void keysetPages_walkIndexInOrder() {
+        assertIndexOrdered(TransactionDao.GET_PAGE_NEWEST_FIRST);
+        assertIndexOrdered(TransactionDao.GET_PAGE_OLDEST_FIRST);
+        assertIndexOrdered(TransactionDao.GET_PAGE_LARGEST_FIRST);
+        assertIndexOrdered(TransactionDao.GET_PAGE_SMALLEST_FIRST);
+    }
+
+    @Test
+    public void searchPages_useFtsAndWalkIndexInOrder() {
+        assertIndexOrdered(TransactionDao.SEARCH_PAGE_NEWEST_FIRST);
+        assertIndexOrdered(TransactionDao.SEARCH_PAGE_OLDEST_FIRST);
+        assertIndexOrdered(TransactionDao.SEARCH_PAGE_LARGEST_FIRST);
+        assertIndexOrdered(TransactionDao.SEARCH_PAGE_SMALLEST_FIRST);
+    }
+
+    @Test
+    public void bulkChunks_useIndex() {
+        assertIndexOrdered(TransactionDao.GET_BY_USER_CHUNK);
+        assertNoTableScan(TransactionDao.MIGRATE_USER_ID_CHUNK);
+    }
+
+    @Test
+    public void rangeSums_useCoveringIndex() {
+        assertNoTableScan(TransactionDao.GET_SUM_INCOME_IN_RANGE);
+        assertNoTableScan(TransactionDao.GET_SUM_EXPENSE_IN_RANGE);
+        assertNoTableScan(TransactionDao.GET_SUM_ALL_IN_RANGE);
+    }
+
+    @Test
+    public void categorySums_useCoveringIndex() {
+        // GROUP BY category over one user's range: the grouping sorts in a temp B-tree by design
+        assertNoTableScan(TransactionDao.GET_CATEGORY_SUMS_IN_RANGE);
+    }
+
+    @Test
+    public void byId_usesPrimaryKey() {
+        assertNoTableScan(TransactionDao.GET_BY_ID);
+        assertNoTableScan(TransactionDao.DELETE_BY_ID);
+        assertNoTableScan(TransactionDao.GET_OWNED_IDS);
+        assertNoTableScan(TransactionDao.SUMMARIZE_BY_IDS);
+        assertNoTableScan(TransactionDao.DELETE_BY_IDS);
+    }
+
+    @Test
+    public void rollupReads_usePrimaryKey() {
+        assertNoTableScan(RollupDao.GET_SUM_INCOME);
+        assertNoTableScan(RollupDao.GET_SUM_EXPENSE);
+        assertNoTableScan(RollupDao.GET_SUM_ALL);
+        assertNoTableScan(RollupDao.GET_CATEGORY_SUMS);
+        assertNoTableScan(RollupDao.OBSERVE_CATEGORY_SUMS);
+        assertNoTableScan(RollupDao.OBSERVE_MONTH_SUMMARY);
+        assertIndexOrdered(RollupDao.GET_MONTH_SUMMARIES);
+    }
+
+    @Test
+    public void balanceQueries_usePrimaryKey() {
+        assertNoTableScan(BalanceDao.GET_ROW);
+        assertNoTableScan(BalanceDao.OBSERVE_BALANCE);
+        assertNoTableScan(BalanceDao.ADD_DELTA);
+        assertNoTableScan(BalanceDao.SET_VALUE);
+        assertNoTableScan(BalanceDao.MARK_SET_PUSHED);
+        assertNoTableScan(BalanceDao.MARK_DELTA_PUSHED);
+        assertNoTableScan(BalanceDao.APPLY_PULLED);
+    }
+
+    // No table scan and no "USE TEMP B-TREE": rows come off an index already in ORDER BY order,
+    // so LIMIT stops after one page instead of sorting every match first
+    private void assertIndexOrdered(String sql) {
+        List<String> details = assertNoTableScan(sql);
+        for (String d : details) {
+            if (d.toUpperCase(Locale.ROOT).contains("USE TEMP B-TREE")) {
+                fail("temp B-tree sort in plan for: " + sql + "\nplan: " + details);
+            }
+        }
+    }
+
+    private List<String> assertNoTableScan(String sql) {
+        List<String> details = new ArrayList<>();
+        try (Cursor c = sqlite.query("EXPLAIN QUERY PLAN " + sql)) {
+            int col = c.getColumnIndex("detail");
+            while (c.moveToNext()) details.add(c.getString(col));
+        }
+        assertFalse("empty query plan for: " + sql, details.isEmpty());
+        for (String d : details) {
+            String upper = d.toUpperCase(Locale.ROOT);
+            // a plain "SCAN transactions" (or "SCAN TABLE transactions" on older SQLite) walks every row
+            if (upper.startsWith("SCAN") && !upper.contains("VIRTUAL TABLE")) {
+                fail("table scan in plan for: " + sql + "\nplan: " + details);
+            }
+        }
+        return details;
+    }
+}
@@ -4,38 +4,79 @@ import android.content.Context;
 import android.content.SharedPreferences;
 
 import java.text.NumberFormat;
+import java.util.Collections;
 import java.util.Currency;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Formats amounts stored in VND for display. This runs on every list bind, chart label and
+// notification, so nothing is looked up or built per call: the rates are a constant table, the
+// preferred currency is cached and kept current by a preference listener, and each thread reuses one
+// NumberFormat per currency (NumberFormat is not thread-safe, so the instances are never shared).
 public class CurrencyUtils {
     private static final String PREFS = "mdp_prefs";
+    private static final String KEY_CURRENCY = "pref_currency";
 
     // Basic, static exchange rates: target currency per 1 VND
     // These are approximate and should be updated from a remote source in a real app.
-    private static Map<String, Double> ratesPerVnd() {
+    private static final Map<String, Double> RATES_PER_VND;
+    static {
         Map<String, Double> m = new HashMap<>();
         m.put("VND", 1.0);
         m.put("USD", 1.0 / 23000.0); // ~0.00004348
         m.put("EUR", 1.0 / 25000.0); // ~0.00004
         m.put("CNY", 1.0 / 3300.0);  // ~0.000303
         // add more if needed
-        return m;
+        RATES_PER_VND = Collections.unmodifiableMap(m);
     }
 
+    private static final ThreadLocal<Map<String, CachedFormat>> FORMATTERS = new ThreadLocal<Map<String, CachedFormat>>() {
+        @Override
+        protected Map<String, CachedFormat> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    // A formatter and, for codes without a fixed locale, the default locale it was built for
+    private static final class CachedFormat {
+        final NumberFormat nf;
+        final Locale defaultLocale; // null: the locale is fixed by the code
+
+        CachedFormat(NumberFormat nf, Locale defaultLocale) {
+            this.nf = nf;
+            this.defaultLocale = defaultLocale;
+        }
+    }
+
+    // currency for locales not mapped by language in getCurrencyCodeForLocale
+    private static final Map<Locale, String> LOCALE_CURRENCY = new ConcurrentHashMap<>();
+
+    // null until first read; then follows the preference through prefListener
+    private static volatile String prefCurrency;
+    // SharedPreferences keeps listeners weakly: this field is what keeps it registered
+    private static SharedPreferences.OnSharedPreferenceChangeListener prefListener;
+
+    private CurrencyUtils() {}
+
     // Format an amount that is stored in the app's base currency (VND) into the user's selected currency.
     public static String formatCurrency(Context ctx, double amountInVnd) {
+        return formatWithCurrency(amountInVnd, getDisplayCurrencyCode(ctx));
+    }
+
+    // Same, for a currency code already resolved with getDisplayCurrencyCode (formatting many rows)
+    public static String formatCurrency(double amountInVnd, String code) {
+        return formatWithCurrency(amountInVnd, code);
+    }
+
+    // Currency amounts are shown in: the selected one, or the one for the current language if "auto"
+    public static String getDisplayCurrencyCode(Context ctx) {
         String pref = getPrefCurrency(ctx);
 
         // if auto, determine currency based on current locale/language
-        if ("auto".equalsIgnoreCase(pref)) {
-            String currencyCode = getCurrencyCodeForLocale(ctx);
-            return formatWithCurrency(amountInVnd, currencyCode);
-        }
-
-        String code = pref.toUpperCase(Locale.ROOT);
-        return formatWithCurrency(amountInVnd, code);
+        if ("auto".equalsIgnoreCase(pref)) return getCurrencyCodeForLocale(ctx);
+        return pref;
     }
 
     /**
@@ -57,12 +98,13 @@ public class CurrencyUtils {
                 return "EUR"; // Spanish -> Euro
             default:
                 // Try to get currency from locale
-                try {
-                    Currency currency = Currency.getInstance(currentLocale);
-                    return currency.getCurrencyCode();
-                } catch (Exception e) {
-                    return "VND"; // Fallback to VND
-                }
+                return LOCALE_CURRENCY.computeIfAbsent(currentLocale, l -> {
+                    try {
+                        return Currency.getInstance(l).getCurrencyCode();
+                    } catch (Exception e) {
+                        return "VND"; // Fallback to VND
+                    }
+                });
         }
     }
 
@@ -70,45 +112,70 @@ public class CurrencyUtils {
      * Format amount with specific currency code
      */
     private static String formatWithCurrency(double amountInVnd, String code) {
-        // Convert from VND into target currency using simple table
-        double converted = amountInVnd;
-        Map<String, Double> rates = ratesPerVnd();
-        if (!"VND".equals(code)) {
-            Double r = rates.get(code);
-            if (r != null) converted = amountInVnd * r;
-            else {
-                // unknown currency code: attempt no conversion
-                converted = amountInVnd;
-            }
-        }
+        // Convert from VND into target currency using simple table; unknown codes are not converted
+        Double r = RATES_PER_VND.get(code);
+        double converted = r == null ? amountInVnd : amountInVnd * r;
+        return formatterFor(code).format(converted);
+    }
 
-        // Get formatter for target currency and format
-        NumberFormat nf = getFormatterForCode(code);
-        try {
-            Currency c = Currency.getInstance(code);
-            nf.setCurrency(c);
-        } catch (Exception ignored) {}
-        return nf.format(converted);
+    // This thread's formatter for code, built on first use. Codes formatted in the default locale are
+    // rebuilt when that locale changes (the user switched language while the app was running).
+    private static NumberFormat formatterFor(String code) {
+        Map<String, CachedFormat> mine = FORMATTERS.get();
+        CachedFormat f = mine.get(code);
+        if (f == null || (f.defaultLocale != null && !f.defaultLocale.equals(Locale.getDefault()))) {
+            Locale fixed = fixedLocaleFor(code);
+            Locale locale = fixed != null ? fixed : Locale.getDefault();
+            f = new CachedFormat(newFormatter(code, locale), fixed != null ? null : locale);
+            mine.put(code, f);
+        }
+        return f.nf;
     }
 
     private static String getPrefCurrency(Context ctx) {
-        try {
-            SharedPreferences sp = ctx.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
-            return sp.getString("pref_currency", "VND");
-        } catch (Exception ex) {
-            return "VND";
+        String cached = prefCurrency;
+        if (cached != null) return cached;
+        synchronized (CurrencyUtils.class) {
+            if (prefCurrency == null) {
+                try {
+                    SharedPreferences sp = ctx.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+                    prefListener = CurrencyUtils::onPreferenceChanged;
+                    sp.registerOnSharedPreferenceChangeListener(prefListener);
+                    prefCurrency = readPrefCurrency(sp);
+                } catch (Exception ex) {
+                    return "VND";
+                }
+            }
+            return prefCurrency;
         }
     }
 
-    private static NumberFormat getFormatterForCode(String code) {
-        Locale locale;
+    // Body of prefListener; package-private so the unit test can drive it without a Context
+    static void onPreferenceChanged(SharedPreferences prefs, String key) {
+        // key is null when the file was cleared
+        if (key == null || KEY_CURRENCY.equals(key)) prefCurrency = readPrefCurrency(prefs);
+    }
+
+    private static String readPrefCurrency(SharedPreferences sp) {
+        return sp.getString(KEY_CURRENCY, "VND").toUpperCase(Locale.ROOT);
+    }
+
+    // Locale a known currency is always shown in; null for codes that follow the default locale
+    private static Locale fixedLocaleFor(String code) {
         switch (code) {
-            case "USD": locale = Locale.US; break;
-            case "EUR": locale = Locale.GERMANY; break;
-            case "CNY": locale = Locale.CHINA; break;
-            case "VND": locale = new Locale.Builder().setLanguage("vi").setRegion("VN").build(); break;
-            default: locale = Locale.getDefault(); break;
+            case "USD": return Locale.US;
+            case "EUR": return Locale.GERMANY;
+            case "CNY": return Locale.CHINA;
+            case "VND": return new Locale.Builder().setLanguage("vi").setRegion("VN").build();
+            default: return null;
         }
-        return NumberFormat.getCurrencyInstance(locale);
+    }
+
+    private static NumberFormat newFormatter(String code, Locale locale) {
+        NumberFormat nf = NumberFormat.getCurrencyInstance(locale);
+        try {
+            nf.setCurrency(Currency.getInstance(code));
+        } catch (Exception ignored) {}
+        return nf;
     }
 }
@@ -1,9 +1,7 @@
 package net.tiramisu.mdp;
 
 import android.app.AlertDialog;
-import android.content.Context;
 import android.content.DialogInterface;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.text.InputType;
 import android.util.Log;
@@ -17,28 +15,29 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.SetOptions;
 
-import net.tiramisu.mdp.model.TransactionEntity;
+import net.tiramisu.mdp.model.MonthSummary;
+import net.tiramisu.mdp.model.TransactionRow;
+import net.tiramisu.mdp.repo.RequestScope;
+import net.tiramisu.mdp.repo.TransactionChangeListener;
 import net.tiramisu.mdp.repo.TransactionRepository;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.ZoneId;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class HomeFragment extends Fragment {
     private static final int REQUEST_VIEW_DETAILS = 1001;
+    private static final int RECENT_LIMIT = 5;
 
     private TextView tvBalance;
     private TextView tvIncome;
@@ -50,13 +49,27 @@ public class HomeFragment extends Fragment {
     private TransactionRepository repository;
     private double currentBaseBalance = 0.0;
     private TransactionAdapter recentAdapter;
+    // recent rows are formatted on the repository read pool; a newer delivery supersedes an older one
+    private TransactionFormatter formatter;
+    private RequestScope requests;
+    private List<TransactionRow> recentRows;
+
+    // observable dashboard queries for observedKey ("userId/yyyy-MM") and their latest values
+    private String observedKey;
+    private LiveData<MonthSummary> currentMonthLive;
+    private LiveData<MonthSummary> previousMonthLive;
+    private LiveData<List<TransactionRow>> recentLive;
+    private LiveData<Double> baseBalanceLive;
+    private MonthSummary currentSummary;
+    private MonthSummary previousSummary;
 
     public HomeFragment() {}
 
-    // listener to refresh data when transactions change
-    private final Runnable repoListener = () -> {
-        if (getActivity() == null) return;
-        getActivity().runOnUiThread(this::refreshData);
+    // transaction changes reach the dashboard through its LiveData; listen only for changes of
+    // unknown extent (base balance edits, migrations), which need the base balance re-read
+    private final TransactionChangeListener repoListener = change -> {
+        if (getActivity() == null || !change.full) return;
+        refreshData();
     };
 
     @Nullable
@@ -80,11 +93,13 @@ public class HomeFragment extends Fragment {
         com.google.android.material.button.MaterialButton btnGenerateTestData = view.findViewById(R.id.btnGenerateTestData);
 
         repository = net.tiramisu.mdp.repo.TransactionRepository.getInstance(requireContext());
+        requests = RequestScope.of(getViewLifecycleOwner());
+        formatter = new TransactionFormatter(requireContext());
 
         // prepare recent recycler
         if (rvRecent != null) {
             rvRecent.setLayoutManager(new LinearLayoutManager(requireContext()));
-            recentAdapter = new TransactionAdapter(new ArrayList<>());
+            recentAdapter = new TransactionAdapter();
 
             // Set click listener to open transaction details
             recentAdapter.setOnItemClickListener(transaction -> {
@@ -93,8 +108,7 @@ public class HomeFragment extends Fragment {
                 intent.putExtra("EXTRA_DATE", transaction.date);
                 intent.putExtra("EXTRA_AMOUNT", transaction.amount);
                 intent.putExtra("EXTRA_CATEGORY", transaction.category);
-                intent.putExtra("EXTRA_NOTE", transaction.note);
-                intent.putExtra("EXTRA_TIMESTAMP", transaction.extraLong); // Pass timestamp
+                intent.putExtra("EXTRA_ID", transaction.id); // note is loaded by id
                 startActivityForResult(intent, REQUEST_VIEW_DETAILS);
             });
 
@@ -135,21 +149,12 @@ public class HomeFragment extends Fragment {
         if (targetUid != null && !targetUid.isEmpty()) {
             // migrate any local transactions into the user account so sums and recent list are preserved
             repository.migrateUserId("local", targetUid, () -> {
-                // after migration, load base balance and then load sums and recent
-                loadUserBaseBalance(targetUid, () -> {
-                    loadMonthlySums(targetUid);
-                    loadRecent(targetUid);
-                    loadMonthComparison(targetUid);
+                if (getActivity() != null) getActivity().runOnUiThread(() -> {
+                    if (getView() != null) loadDashboard(targetUid);
                 });
             });
         } else {
-            // load local balance from SharedPreferences
-            SharedPreferences sp = requireContext().getSharedPreferences("mdp_local", Context.MODE_PRIVATE);
-            currentBaseBalance = Double.longBitsToDouble(sp.getLong("local_balance_bits", Double.doubleToLongBits(0.0)));
-            updateBalanceDisplay(currentBaseBalance);
-            loadMonthlySums("local");
-            loadRecent("local");
-            loadMonthComparison("local");
+            loadDashboard("local");
         }
     }
 
@@ -167,6 +172,13 @@ public class HomeFragment extends Fragment {
         if (repository != null) repository.unregisterChangeListener(repoListener);
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        // observers die with the view; the next view binds again
+        stopObservingDashboard();
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -190,173 +202,119 @@ public class HomeFragment extends Fragment {
             }
         } catch (Exception ignored) {}
 
-        final String targetUid = uid;
-        Log.d("HomeFrag", "refreshData() called, uid=" + targetUid + ", currentBaseBalance=" + currentBaseBalance);
-
-        if (uid != null && !uid.isEmpty()) {
-            // Prefer cached base (LiveData) or recently-manually-set base to avoid a race where
-            // a remote fetch (that may still be propagating) overwrites the user's entered value.
-            try {
-                Double cached = null;
-                try { cached = repository.getBaseBalanceLive(targetUid).getValue(); } catch (Exception ignored) {}
-                if (cached != null) {
-                    currentBaseBalance = cached;
-                    updateBalanceDisplay(currentBaseBalance);
-                    loadMonthlySums(targetUid);
-                    loadRecent(targetUid);
-                    loadMonthComparison(targetUid);
-                } else if (repository != null && repository.wasManuallyUpdatedRecently(targetUid, 5000)) {
-                    // use the in-memory currentBaseBalance (set when user saved) and refresh UI
-                    updateBalanceDisplay(currentBaseBalance);
-                    loadMonthlySums(targetUid);
-                    loadRecent(targetUid);
-                    loadMonthComparison(targetUid);
-                } else {
-                    // no cached value and no recent manual update -> fetch from Firestore
-                    loadUserBaseBalance(targetUid, () -> {
-                        loadMonthlySums(targetUid);
-                        loadRecent(targetUid);
-                        loadMonthComparison(targetUid);
-                    });
-                }
-            } catch (Exception ex) {
-                // fallback to the previous behavior on any error
-                loadUserBaseBalance(targetUid, () -> {
-                    loadMonthlySums(targetUid);
-                    loadRecent(targetUid);
-                    loadMonthComparison(targetUid);
-                });
-            }
-        } else {
-            // load local balance from SharedPreferences
-            SharedPreferences sp = requireContext().getSharedPreferences("mdp_local", Context.MODE_PRIVATE);
-            currentBaseBalance = Double.longBitsToDouble(sp.getLong("local_balance_bits", Double.doubleToLongBits(0.0)));
-            updateBalanceDisplay(currentBaseBalance);
-            loadMonthlySums("local");
-            loadRecent("local");
-            loadMonthComparison("local");
+        final String userId = (uid == null || uid.isEmpty()) ? "local" : uid;
+        Log.d("HomeFrag", "refreshData() called, uid=" + userId + ", currentBaseBalance=" + currentBaseBalance);
+        if (repository == null || getView() == null) return;
+        // rows in the recent list carry formatted amounts and dates: rebuild them if the settings changed
+        if (formatter != null && !formatter.isCurrent(requireContext())) {
+            formatter = new TransactionFormatter(requireContext());
+            showRecent();
         }
+        // the base balance is read from the balances table; this only asks for a background Firestore sync
+        repository.syncBaseBalance(userId);
+        loadDashboard(userId);
     }
 
-    private void loadRecent(String userId) {
-        repository.getNewestTransactions(userId, 5, (List<TransactionEntity> list) -> {
-            if (list == null) return;
-            if (getActivity() == null) return;
-            getActivity().runOnUiThread(() -> {
-                if (recentAdapter == null) return;
-                java.util.List<Transaction> temp = new java.util.ArrayList<>();
-                // convert each TransactionEntity -> Transaction model and add to temp list
-                for (TransactionEntity te : list) {
-                    Transaction t = getTransaction(te);
-                    temp.add(t);
-                }
-                recentAdapter.setItems(temp);
-            });
-        });
+    // Bind the dashboard (base balance, month sums, month-over-month comparison and the recent list) to
+    // observable queries for this user and month. Room re-runs them only when the tables change, so calling this
+    // again on every tab switch just re-renders the balance with the current base.
+    private void loadDashboard(String userId) {
+        YearMonth month = YearMonth.now();
+        String key = userId + "/" + month;
+        if (!key.equals(observedKey)) {
+            stopObservingDashboard();
+            observedKey = key;
+            currentSummary = null;
+            previousSummary = null;
+            currentMonthLive = repository.getMonthSummaryLive(userId, month.toString());
+            previousMonthLive = repository.getMonthSummaryLive(userId, month.minusMonths(1).toString());
+            recentLive = repository.getRecentLive(userId, RECENT_LIMIT);
+            baseBalanceLive = repository.getBaseBalanceLive(userId);
+            baseBalanceLive.observe(getViewLifecycleOwner(), baseObserver);
+            currentMonthLive.observe(getViewLifecycleOwner(), currentObserver);
+            previousMonthLive.observe(getViewLifecycleOwner(), previousObserver);
+            recentLive.observe(getViewLifecycleOwner(), recentObserver);
+        }
+        renderTotals();
     }
 
-    @NonNull
-    private Transaction getTransaction(TransactionEntity te) {
-        int icon = R.drawable.ic_transaction;
-        if (CategoryHelper.KEY_FOOD.equals(te.category)) icon = R.drawable.ic_food;
-        if (CategoryHelper.KEY_TRANSPORT.equals(te.category)) icon = R.drawable.ic_transport;
-        if (CategoryHelper.KEY_SHOPPING.equals(te.category)) icon = R.drawable.ic_shopping;
-        if (CategoryHelper.KEY_ENTERTAINMENT.equals(te.category)) icon = R.drawable.ic_entertainment;
-
-        // Use title if available, otherwise use localized category as title
-        String title;
-        if (te.title != null && !te.title.isEmpty()) {
-            title = te.title;
-        } else if (te.category != null) {
-            title = CategoryHelper.getLocalizedCategory(getContext(), te.category);
-        } else {
-            title = getString(R.string.transaction_title_default);
-        }
+    private void stopObservingDashboard() {
+        if (currentMonthLive != null) currentMonthLive.removeObserver(currentObserver);
+        if (previousMonthLive != null) previousMonthLive.removeObserver(previousObserver);
+        if (recentLive != null) recentLive.removeObserver(recentObserver);
+        if (baseBalanceLive != null) baseBalanceLive.removeObserver(baseObserver);
+        observedKey = null;
+    }
 
-        // Format date string from timestamp
-        String dateStr = "now";
-        try {
-            java.text.SimpleDateFormat df = new java.text.SimpleDateFormat("dd/MM/yyyy", java.util.Locale.getDefault());
-            dateStr = df.format(new java.util.Date(te.timestamp));
-        } catch (Exception ignored) {}
+    private final Observer<MonthSummary> currentObserver = s -> {
+        currentSummary = s;
+        renderTotals();
+    };
+
+    private final Observer<MonthSummary> previousObserver = s -> {
+        previousSummary = s;
+        renderTotals();
+    };
 
-        Transaction t = new Transaction(title, dateStr, te.amount, icon);
-        t.extraLong = te.timestamp; // Store timestamp for deletion
-        t.category = te.category;
-        t.note = te.note;
-        return t;
+    // null until the user's balances row exists (first sync for a signed-in user)
+    private final Observer<Double> baseObserver = base -> {
+        if (base == null) return;
+        currentBaseBalance = base;
+        renderTotals();
+    };
+
+    private final Observer<List<TransactionRow>> recentObserver = rows -> {
+        if (rows == null) return;
+        recentRows = rows;
+        showRecent();
+    };
+
+    private void showRecent() {
+        if (recentAdapter == null || recentRows == null || repository == null) return;
+        final TransactionFormatter rowFormatter = formatter;
+        final List<TransactionRow> rows = recentRows;
+        requests.deliver("recent", repository.computeAsync("formatRecent", () -> rowFormatter.formatAll(rows)),
+                recentAdapter::setItems);
+    }
+
+    private void renderTotals() {
+        if (getContext() == null) return;
+        if (currentSummary == null) {
+            updateBalanceDisplay(currentBaseBalance);
+            return;
+        }
+        MonthSummary cur = currentSummary;
+        Log.d("HomeFrag", "dashboard totals: income=" + cur.income + " expense=" + cur.expense + " base=" + currentBaseBalance);
+        if (tvIncome != null) tvIncome.setText(CurrencyUtils.formatCurrency(getContext(), cur.income));
+        if (tvExpense != null) tvExpense.setText(CurrencyUtils.formatCurrency(getContext(), Math.abs(cur.expense)));
+        // also update balance display: base + net change this month (expense is a negative sum)
+        updateBalanceDisplay(currentBaseBalance + cur.income + cur.expense);
+        if (previousSummary != null) {
+            updateIncomeComparison(cur.income, previousSummary.income);
+            updateExpenseComparison(cur.expense, previousSummary.expense);
+        }
     }
 
-    private void loadMonthlySums(String userId) {
-        // compute start and end of current month in millis
-        long from, to;
+    // [from, to] in millis of the month that is 'monthsAgo' months before the current one
+    private static long[] monthRange(int monthsAgo) {
         try {
-            LocalDate now = LocalDate.now();
-            LocalDate start = now.withDayOfMonth(1);
-            LocalDate end = now.withDayOfMonth(now.lengthOfMonth());
-            from = start.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-            to = end.atTime(23,59,59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            LocalDate month = LocalDate.now().minusMonths(monthsAgo);
+            LocalDate start = month.withDayOfMonth(1);
+            LocalDate end = month.withDayOfMonth(month.lengthOfMonth());
+            return new long[]{
+                    start.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                    end.atTime(23,59,59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+            };
         } catch (Exception ex) {
             Calendar cal = Calendar.getInstance();
+            cal.add(Calendar.MONTH, -monthsAgo);
             cal.set(Calendar.DAY_OF_MONTH, 1);
             cal.set(Calendar.HOUR_OF_DAY, 0); cal.set(Calendar.MINUTE, 0); cal.set(Calendar.SECOND,0); cal.set(Calendar.MILLISECOND,0);
-            from = cal.getTimeInMillis();
+            long from = cal.getTimeInMillis();
             cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DAY_OF_MONTH));
             cal.set(Calendar.HOUR_OF_DAY,23); cal.set(Calendar.MINUTE,59); cal.set(Calendar.SECOND,59);
-            to = cal.getTimeInMillis();
+            return new long[]{from, cal.getTimeInMillis()};
         }
-
-        final String uid = userId;
-        // fetch sums asynchronously
-        long finalFrom = from;
-        long finalTo = to;
-        repository.getSumIncomeInRange(uid, from, to, (Double income) -> repository.getSumExpenseInRange(uid, finalFrom, finalTo, (Double expense) -> {
-            // update UI on main thread
-            if (getActivity() == null) return;
-            getActivity().runOnUiThread(() -> {
-                Log.d("HomeFrag", "loadMonthlySums results: income=" + income + " expense=" + expense + " base=" + currentBaseBalance);
-                if (tvIncome != null) tvIncome.setText(CurrencyUtils.formatCurrency(getContext(), income == null ? 0.0 : income));
-                if (tvExpense != null) tvExpense.setText(CurrencyUtils.formatCurrency(getContext(), Math.abs(expense == null ? 0.0 : expense)));
-                // also update balance display: base + net change this month
-                double net = (income == null ? 0.0 : income) + (expense == null ? 0.0 : expense); // expense is negative sum
-                updateBalanceDisplay(currentBaseBalance + net);
-            });
-        }));
-    }
-
-    // Load base balance for a user from Firestore. If 'after' is non-null, call it after loading (success or failure).
-    private void loadUserBaseBalance(String uid, Runnable after) {
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
-        db.collection("users").document(uid).get()
-                .addOnSuccessListener((DocumentSnapshot doc) -> {
-                    // if the user recently manually updated the base, prefer that and do not overwrite
-                    if (repository != null && repository.wasManuallyUpdatedRecently(uid, 5000)) {
-                        Log.d("HomeFrag", "loadUserBaseBalance: skipping overwrite because manual update recent for uid=" + uid);
-                        if (after != null) after.run();
-                        return;
-                    }
-
-                    if (doc == null || !doc.exists()) {
-                        currentBaseBalance = 0.0;
-                    } else {
-                        Object balanceObj = doc.get("balance");
-                        currentBaseBalance = parseNumber(balanceObj);
-                    }
-                    updateBalanceDisplay(currentBaseBalance);
-                    Log.d("HomeFrag", "loadUserBaseBalance success: base=" + currentBaseBalance + " uid=" + uid);
-                    if (after != null) after.run();
-                })
-                .addOnFailureListener(e -> {
-                    if (repository != null && repository.wasManuallyUpdatedRecently(uid, 5000)) {
-                        Log.d("HomeFrag", "loadUserBaseBalance failed but manual update recent, skipping overwrite for uid=" + uid);
-                        if (after != null) after.run();
-                        return;
-                    }
-                    currentBaseBalance = 0.0;
-                    updateBalanceDisplay(currentBaseBalance);
-                    Log.d("HomeFrag", "loadUserBaseBalance failed for uid=" + uid + ", err=" + e.getMessage());
-                    if (after != null) after.run();
-                });
     }
 
     private void updateBalanceDisplay(double value) {
@@ -364,19 +322,6 @@ public class HomeFragment extends Fragment {
         tvBalance.setText(CurrencyUtils.formatCurrency(getContext(), value));
     }
 
-    private double parseNumber(Object obj) {
-        if (obj == null) return 0.0;
-        try {
-            if (obj instanceof Number) return ((Number) obj).doubleValue();
-            String s = obj.toString();
-            s = s.replaceAll("[^0-9.-]", "");
-            if (s.isEmpty()) return 0.0;
-            return Double.parseDouble(s);
-        } catch (Exception ex) {
-            return 0.0;
-        }
-    }
-
     private void showEditBalanceDialog(String uid) {
         AlertDialog.Builder b = new AlertDialog.Builder(requireContext());
         b.setTitle("Chỉnh sửa số dư");
@@ -396,7 +341,6 @@ public class HomeFragment extends Fragment {
             String s = input.getText() == null ? "" : input.getText().toString().trim();
             double v = 0.0;
             try { v = Double.parseDouble(s.replaceAll("[^0-9.-]", "")); } catch (Exception ignored) {}
-            // update either Firestore or SharedPreferences
             // We interpret the user's input `v` as the desired displayed total balance (base + net_month).
             // To persist properly we need to store the base balance = v - net_month, so later when sums are
             // added the displayed value equals what the user entered.
@@ -406,150 +350,22 @@ public class HomeFragment extends Fragment {
             computeCurrentMonthNet(targetUser, (Double net) -> {
                 double netVal = net == null ? 0.0 : net;
                 double baseToStore = enteredDisplayed - netVal;
-
-                if (targetUser.equals("local")) {
-                    saveLocalBalance(baseToStore);
-                    currentBaseBalance = baseToStore;
-                    if (repository != null) { repository.setCachedBaseBalance("local", baseToStore); repository.notifyChange(); }
-                    if (getActivity() != null) getActivity().runOnUiThread(() -> {
-                        loadMonthlySums("local");
-                        loadRecent("local");
-                    });
-                } else {
-                    // Immediately update cached base so UI shows the user's entered value while Firestore write runs
-                    currentBaseBalance = baseToStore;
-                    if (repository != null) { repository.setCachedBaseBalance(targetUser, baseToStore); repository.notifyChange(); }
-
-                    FirebaseFirestore db = FirebaseFirestore.getInstance();
-                    Map<String, Object> update = new HashMap<>();
-                    update.put("balance", baseToStore);
-                    db.collection("users").document(targetUser).set(update, SetOptions.merge())
-                            .addOnSuccessListener(aVoid -> {
-                                // already cached and currentBaseBalance set; just refresh UI
-                                if (getActivity() != null) getActivity().runOnUiThread(() -> {
-                                    loadMonthlySums(targetUser);
-                                    loadRecent(targetUser);
-                                });
-                            })
-                            .addOnFailureListener(e -> {
-                                // fallback: persist locally but still keep cached value
-                                saveLocalBalance(baseToStore);
-                                if (getActivity() != null) getActivity().runOnUiThread(() -> {
-                                    loadMonthlySums(targetUser);
-                                    loadRecent(targetUser);
-                                });
-                            });
-                }
+                // stored in the balances table at once (the dashboard observes it) and written to
+                // Firestore in the background for signed-in users
+                if (repository != null) repository.setUserBaseBalance(targetUser, baseToStore);
             });
         });
         b.setNegativeButton("Hủy", (DialogInterface dialog, int which) -> dialog.dismiss());
         b.show();
     }
 
-    private void saveLocalBalance(double v) {
-        SharedPreferences sp = requireContext().getSharedPreferences("mdp_local", Context.MODE_PRIVATE);
-        SharedPreferences.Editor ed = sp.edit();
-        ed.putLong("local_balance_bits", Double.doubleToLongBits(v));
-        ed.apply();
-    }
-
     // Explanation: add helper to compute the net change (income + expense) for the current month
     // so we can correctly compute displayed balance = base balance + net-of-month when user edits base.
     private void computeCurrentMonthNet(String userId, java.util.function.Consumer<Double> callback) {
-        long from, to;
-        try {
-            LocalDate now = LocalDate.now();
-            LocalDate start = now.withDayOfMonth(1);
-            LocalDate end = now.withDayOfMonth(now.lengthOfMonth());
-            from = start.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-            to = end.atTime(23,59,59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        } catch (Exception ex) {
-            Calendar cal = Calendar.getInstance();
-            cal.set(Calendar.DAY_OF_MONTH, 1);
-            cal.set(Calendar.HOUR_OF_DAY, 0); cal.set(Calendar.MINUTE, 0); cal.set(Calendar.SECOND,0); cal.set(Calendar.MILLISECOND,0);
-            from = cal.getTimeInMillis();
-            cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DAY_OF_MONTH));
-            cal.set(Calendar.HOUR_OF_DAY,23); cal.set(Calendar.MINUTE,59); cal.set(Calendar.SECOND,59);
-            to = cal.getTimeInMillis();
-        }
-
-        final long finalFrom = from;
-        final long finalTo = to;
-        // use repository methods to fetch income and expense and combine them
-        repository.getSumIncomeInRange(userId, finalFrom, finalTo, (Double income) -> repository.getSumExpenseInRange(userId, finalFrom, finalTo, (Double expense) -> {
-            double inc = income == null ? 0.0 : income;
-            double exp = expense == null ? 0.0 : expense; // expense may be negative in DB
-            double net = inc + exp;
-            if (callback != null) callback.accept(net);
-        }));
-    }
-
-    // Load month-over-month comparison
-    private void loadMonthComparison(String userId) {
-        // Get current month range
-        long currentFrom, currentTo;
-        try {
-            LocalDate now = LocalDate.now();
-            LocalDate start = now.withDayOfMonth(1);
-            LocalDate end = now.withDayOfMonth(now.lengthOfMonth());
-            currentFrom = start.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-            currentTo = end.atTime(23,59,59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        } catch (Exception ex) {
-            Calendar cal = Calendar.getInstance();
-            cal.set(Calendar.DAY_OF_MONTH, 1);
-            cal.set(Calendar.HOUR_OF_DAY, 0); cal.set(Calendar.MINUTE, 0); cal.set(Calendar.SECOND,0); cal.set(Calendar.MILLISECOND,0);
-            currentFrom = cal.getTimeInMillis();
-            cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DAY_OF_MONTH));
-            cal.set(Calendar.HOUR_OF_DAY,23); cal.set(Calendar.MINUTE,59); cal.set(Calendar.SECOND,59);
-            currentTo = cal.getTimeInMillis();
-        }
-
-        // Get previous month range
-        long previousFrom, previousTo;
-        try {
-            LocalDate now = LocalDate.now();
-            LocalDate previousMonth = now.minusMonths(1);
-            LocalDate start = previousMonth.withDayOfMonth(1);
-            LocalDate end = previousMonth.withDayOfMonth(previousMonth.lengthOfMonth());
-            previousFrom = start.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-            previousTo = end.atTime(23,59,59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-        } catch (Exception ex) {
-            Calendar cal = Calendar.getInstance();
-            cal.add(Calendar.MONTH, -1);
-            cal.set(Calendar.DAY_OF_MONTH, 1);
-            cal.set(Calendar.HOUR_OF_DAY, 0); cal.set(Calendar.MINUTE, 0); cal.set(Calendar.SECOND,0); cal.set(Calendar.MILLISECOND,0);
-            previousFrom = cal.getTimeInMillis();
-            cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DAY_OF_MONTH));
-            cal.set(Calendar.HOUR_OF_DAY,23); cal.set(Calendar.MINUTE,59); cal.set(Calendar.SECOND,59);
-            previousTo = cal.getTimeInMillis();
-        }
-
-        final String uid = userId;
-
-        // Fetch current month income
-        long finalPreviousFrom = previousFrom;
-        long finalPreviousTo = previousTo;
-        repository.getSumIncomeInRange(uid, currentFrom, currentTo, currentIncome -> {
-            // Fetch previous month income
-            repository.getSumIncomeInRange(uid, finalPreviousFrom, finalPreviousTo, previousIncome -> {
-                if (getActivity() == null) return;
-                getActivity().runOnUiThread(() -> {
-                    updateIncomeComparison(currentIncome, previousIncome);
-                });
-            });
-        });
-
-        // Fetch current month expense
-        long finalPreviousFrom1 = previousFrom;
-        long finalPreviousTo1 = previousTo;
-        repository.getSumExpenseInRange(uid, currentFrom, currentTo, currentExpense -> {
-            // Fetch previous month expense
-            repository.getSumExpenseInRange(uid, finalPreviousFrom1, finalPreviousTo1, previousExpense -> {
-                if (getActivity() == null) return;
-                getActivity().runOnUiThread(() -> {
-                    updateExpenseComparison(currentExpense, previousExpense);
-                });
-            });
+        long[] current = monthRange(0);
+        // net = income + expense (expense is negative in DB), i.e. the plain sum over the month
+        repository.getSumAllInRange(userId, current[0], current[1], (Double net) -> {
+            if (callback != null) callback.accept(net == null ? 0.0 : net);
         });
     }
 
@@ -115,13 +115,6 @@ public class MainActivity extends AppCompatActivity {
                     new ActivityResultContracts.StartActivityForResult(),
                     result -> {
                         if (result != null && result.getResultCode() == RESULT_OK && result.getData() != null) {
-                            // Extract transaction data
-                            Intent data = result.getData();
-                            String category = data.getStringExtra(AddTransactionActivity.EXTRA_CATEGORY);
-                            double amount = data.getDoubleExtra(AddTransactionActivity.EXTRA_AMOUNT, 0);
-                            String title = data.getStringExtra(AddTransactionActivity.EXTRA_TITLE);
-                            boolean isIncome = data.getBooleanExtra(AddTransactionActivity.EXTRA_IS_INCOME, false);
-
                             // Try to update TransactionsFragment UI directly
                             if (viewPager != null) viewPager.setCurrentItem(2, true);
                             ViewPagerAdapter vpAdapter = null;
@@ -132,23 +125,8 @@ public class MainActivity extends AppCompatActivity {
                                 Fragment f = vpAdapter.getFragment(2);
                                 if (f instanceof TransactionsFragment) {
                                     TransactionsFragment tf = (TransactionsFragment) f;
-                                    // choose icon/title based on type
-                                    int icon = R.drawable.ic_transaction;
-                                    String displayTitle = title != null ? title : CategoryHelper.getLocalizedCategory(this, category);
-                                    if (isIncome) {
-                                        icon = R.drawable.ic_wallet;
-                                        if (displayTitle == null || displayTitle.isEmpty()) {
-                                            displayTitle = CategoryHelper.getLocalizedCategory(this, CategoryHelper.KEY_INCOME);
-                                        }
-                                    } else {
-                                        if (CategoryHelper.KEY_FOOD.equals(category)) icon = R.drawable.ic_food;
-                                        if (CategoryHelper.KEY_TRANSPORT.equals(category)) icon = R.drawable.ic_transport;
-                                        if (CategoryHelper.KEY_SHOPPING.equals(category)) icon = R.drawable.ic_shopping;
-                                        if (CategoryHelper.KEY_ENTERTAINMENT.equals(category)) icon = R.drawable.ic_entertainment;
-                                    }
-
-                                    Transaction tx = new Transaction(displayTitle, "now", amount, icon);
-                                    tf.addTransaction(tx);
+                                    // the fragment reloads the row from the repository
+                                    tf.onTransactionAdded();
                                 }
                                 // also refresh HomeFragment sums
                                 Fragment hf = vpAdapter.getFragment(0);
@@ -0,0 +1,19 @@
+package net.tiramisu.mdp;
+
+// Section header of the transactions list: one local-time month with its income and expense
+// subtotals (from monthly_rollups), formatted by TransactionFormatter like the rows it heads.
+public final class MonthHeader {
+    public final long id; // stable adapter id; negative, so it never collides with a row id
+    public final String month; // "yyyy-MM"
+    public final String title;
+    public final String incomeText; // null when the subtotal is not known yet
+    public final String expenseText;
+
+    public MonthHeader(String month, String title, String incomeText, String expenseText) {
+        this.id = -(Integer.parseInt(month.substring(0, 4)) * 12L + Integer.parseInt(month.substring(5, 7)));
+        this.month = month;
+        this.title = title;
+        this.incomeText = incomeText;
+        this.expenseText = expenseText;
+    }
+}
@@ -1,9 +1,13 @@
 package net.tiramisu.mdp;
 
 import android.app.Application;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.util.Log;
 
+import net.tiramisu.mdp.repo.TransactionRepository;
+
 import java.io.File;
 import java.io.FileWriter;
 import java.io.PrintWriter;
@@ -39,4 +43,13 @@ public class MyApp extends Application {
             System.exit(2);
         });
     }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // every time the app leaves the screen, debuggable builds log the repository's counters
+        if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN && (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            TransactionRepository.getInstance(this).logMetrics("ui-hidden");
+        }
+    }
 }
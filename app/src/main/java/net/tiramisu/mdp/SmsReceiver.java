@@ -17,8 +17,9 @@ import com.google.firebase.auth.FirebaseAuth;
 import net.tiramisu.mdp.model.TransactionEntity;
 import net.tiramisu.mdp.repo.TransactionRepository;
 
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Locale;
+import java.util.List;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -73,7 +74,8 @@ public class SmsReceiver extends BroadcastReceiver {
             // Get format for SMS parsing
             String format = bundle.getString("format");
 
-            // Parse all SMS messages
+            // Parse all SMS messages; detected transactions are saved together in one batch
+            List<TransactionEntity> detected = new ArrayList<>();
             for (Object pdu : pdus) {
                 SmsMessage smsMessage;
                 if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.M) {
@@ -113,9 +115,10 @@ public class SmsReceiver extends BroadcastReceiver {
                 Double amount = extractAmount(messageBody);
                 if (amount != null && amount > 0) {
                     // Create transaction
-                    createTransaction(context, amount, sender, messageBody);
+                    detected.add(createTransaction(amount, sender, messageBody));
                 }
             }
+            saveTransactions(context, detected);
         } catch (Exception e) {
             Log.e(TAG, "Error processing SMS", e);
         }
@@ -194,43 +197,50 @@ public class SmsReceiver extends BroadcastReceiver {
     }
 
     /**
-     * Create transaction in database
+     * Build a transaction entity for a detected amount
      */
-    private void createTransaction(Context context, double amount, String sender, String message) {
+    private TransactionEntity createTransaction(double amount, String sender, String message) {
+        String userId = "local";
         try {
-            String userId = "local";
-            try {
-                if (FirebaseAuth.getInstance().getCurrentUser() != null) {
-                    userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
-                }
-            } catch (Exception ignored) {
+            if (FirebaseAuth.getInstance().getCurrentUser() != null) {
+                userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
             }
+        } catch (Exception ignored) {
+        }
 
-            // Create transaction with proper constructor
-            String noteText = "Từ SMS: " + sender + " - " + message.substring(0, Math.min(50, message.length()));
-            TransactionEntity transaction = new TransactionEntity(
-                userId,
-                "expense", // Default to expense
-                amount,
-                noteText,
-                "other",
-                "Giao dịch tự động", // Auto transaction
-                System.currentTimeMillis()
-            );
-
-            // Save to database
+        // Create transaction with proper constructor
+        String noteText = "Từ SMS: " + sender + " - " + message.substring(0, Math.min(50, message.length()));
+        return new TransactionEntity(
+            userId,
+            "expense", // Default to expense
+            amount,
+            noteText,
+            "other",
+            "Giao dịch tự động", // Auto transaction
+            System.currentTimeMillis()
+        );
+    }
+
+    /**
+     * Save detected transactions in a single database transaction
+     */
+    private void saveTransactions(Context context, List<TransactionEntity> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        try {
             TransactionRepository repo = TransactionRepository.getInstance(context);
-            repo.insert(transaction, () -> {
-                Log.d(TAG, "Auto transaction created: " + amount);
+            repo.insertAll(transactions, () -> {
+                for (TransactionEntity t : transactions) {
+                    Log.d(TAG, "Auto transaction created: " + t.amount);
 
-                // Show notification
-                String amountStr = CurrencyUtils.formatCurrency(context, amount);
-                NotificationHelper.showAutoTransactionNotification(context, amountStr);
+                    // Show notification
+                    String amountStr = CurrencyUtils.formatCurrency(context, t.amount);
+                    NotificationHelper.showAutoTransactionNotification(context, amountStr);
+                }
             });
-
         } catch (Exception e) {
             Log.e(TAG, "Error creating transaction", e);
         }
     }
 }
-
@@ -11,19 +11,24 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
 
 import net.tiramisu.mdp.model.CategorySum;
+import net.tiramisu.mdp.model.MonthSummary;
+import net.tiramisu.mdp.repo.RequestScope;
 import net.tiramisu.mdp.repo.TransactionRepository;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -54,16 +59,16 @@ public class StatisticsFragment extends Fragment {
     // keep last fetched sums so we can recompute display when base changes
     private double lastIncome = 0.0;
     private double lastExpense = 0.0;
+    // latest value of the observed base balance (null until the balances row is loaded)
+    private Double lastBase;
     private PieChart pieChartExpense;
 
-    // listener to be notified when transactions change
-    private final Runnable repoListener = () -> {
-        if (getActivity() == null) return;
-        getActivity().runOnUiThread(() -> {
-            View v = getView();
-            if (v != null) refreshForCurrentMonth(v);
-        });
-    };
+    // observable queries for observedKey ("userId/yyyy-MM") of the selected month
+    private String observedKey;
+    private LiveData<MonthSummary> monthSummaryLive;
+    private LiveData<List<CategorySum>> categorySumsLive;
+    // one-shot reads started from this view (month picker)
+    private RequestScope requests;
 
     @Nullable
     @Override
@@ -76,6 +81,7 @@ public class StatisticsFragment extends Fragment {
         super.onViewCreated(view, savedInstanceState);
 
         repository = net.tiramisu.mdp.repo.TransactionRepository.getInstance(requireContext());
+        requests = RequestScope.of(getViewLifecycleOwner());
 
         RecyclerView rv = view.findViewById(R.id.rvMonthTransactions);
         if (rv != null) {
@@ -152,8 +158,9 @@ public class StatisticsFragment extends Fragment {
             final String uidForLive = userId;
             repository.getBaseBalanceLive(uidForLive).observe(getViewLifecycleOwner(), (Double base) -> {
                 android.util.Log.d("StatisticsFrag", "baseLive changed for " + uidForLive + " -> " + base);
+                lastBase = base;
                 View root = getView();
-                if (root != null) refreshForCurrentMonth(root);
+                if (root != null) showTotals(root, lastIncome, lastExpense);
             });
         } catch (Exception ignored) {
         }
@@ -166,279 +173,185 @@ public class StatisticsFragment extends Fragment {
     @Override
     public void onStart() {
         super.onStart();
-        if (repository != null) repository.registerChangeListener(repoListener);
         View v = getView();
         if (v != null) refreshForCurrentMonth(v);
     }
 
     @Override
-    public void onStop() {
-        super.onStop();
-        if (repository != null) repository.unregisterChangeListener(repoListener);
+    public void onDestroyView() {
+        super.onDestroyView();
+        stopObservingMonth();
     }
 
+    // Bind the selected month's totals and category breakdown to observable rollup queries. Room
+    // re-runs them when that month's rows change; asking for the same month again only re-renders.
     private void refreshForCurrentMonth(@NonNull View view) {
-        TextView tvTotalIncome = view.findViewById(R.id.tvTotalIncome);
-        TextView tvTotalExpense = view.findViewById(R.id.tvTotalExpense);
-        TextView tvMonthBalance = view.findViewById(R.id.tvMonthBalance);
-
-        // fetch totals
         String userId = "local";
         try {
             if (FirebaseAuth.getInstance().getCurrentUser() != null)
                 userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
         } catch (Exception ignored) {
         }
-        final String effectiveUser = userId;
-        repository.getSumIncomeInRange(effectiveUser, currentFrom, currentTo, (Double income) -> repository.getSumExpenseInRange(effectiveUser, currentFrom, currentTo, (Double expense) -> {
-            if (getActivity() == null) return;
-            getActivity().runOnUiThread(() -> {
-                // prefer cached LiveData base to avoid race with remote fetch
-                Double cached = null;
-                try {
-                    cached = repository.getBaseBalanceLive(effectiveUser).getValue();
-                } catch (Exception ignored) {
-                }
-                // update last-known sums
-                lastIncome = income == null ? 0.0 : income;
-                lastExpense = expense == null ? 0.0 : expense;
-                if (cached != null) {
-                    double b = cached;
-                    android.util.Log.d("StatisticsFrag", "Using cached base for " + effectiveUser + " = " + b);
-                    if (tvTotalIncome != null)
-                        tvTotalIncome.setText(CurrencyUtils.formatCurrency(getContext(), lastIncome));
-                    if (tvTotalExpense != null)
-                        tvTotalExpense.setText(CurrencyUtils.formatCurrency(getContext(), Math.abs(lastExpense)));
-                    if (tvMonthBalance != null)
-                        tvMonthBalance.setText(CurrencyUtils.formatCurrency(getContext(), b + lastIncome + lastExpense));
-                    // also update activity-level shared summaries if present
-                    if (getActivity() != null) {
-                        try {
-                            TextView actInc = getActivity().findViewById(R.id.tvTotalIncome);
-                            TextView actExp = getActivity().findViewById(R.id.tvTotalExpense);
-                            TextView actBal = getActivity().findViewById(R.id.tvMonthBalance);
-                            if (actInc != null)
-                                actInc.setText(CurrencyUtils.formatCurrency(getActivity(), lastIncome));
-                            if (actExp != null)
-                                actExp.setText(CurrencyUtils.formatCurrency(getActivity(), Math.abs(lastExpense)));
-                            if (actBal != null)
-                                actBal.setText(CurrencyUtils.formatCurrency(getActivity(), b + lastIncome + lastExpense));
-                        } catch (Exception ignored) {
-                        }
-                    }
-                } else {
-                    android.util.Log.d("StatisticsFrag", "Cached base not available for " + effectiveUser + "; falling back to storage");
-                    repository.getUserBaseBalance(effectiveUser, (Double base) -> {
-                        double b = base == null ? 0.0 : base;
-                        if (getActivity() == null) return;
-                        getActivity().runOnUiThread(() -> {
-                            if (tvTotalIncome != null)
-                                tvTotalIncome.setText(CurrencyUtils.formatCurrency(getContext(), lastIncome));
-                            if (tvTotalExpense != null)
-                                tvTotalExpense.setText(CurrencyUtils.formatCurrency(getContext(), Math.abs(lastExpense)));
-                            if (tvMonthBalance != null)
-                                tvMonthBalance.setText(CurrencyUtils.formatCurrency(getContext(), b + lastIncome + lastExpense));
-                            // also update activity-level shared summaries
-                            if (getActivity() != null) {
-                                try {
-                                    TextView actInc = getActivity().findViewById(R.id.tvTotalIncome);
-                                    TextView actExp = getActivity().findViewById(R.id.tvTotalExpense);
-                                    TextView actBal = getActivity().findViewById(R.id.tvMonthBalance);
-                                    if (actInc != null)
-                                        actInc.setText(CurrencyUtils.formatCurrency(getActivity(), lastIncome));
-                                    if (actExp != null)
-                                        actExp.setText(CurrencyUtils.formatCurrency(getActivity(), Math.abs(lastExpense)));
-                                    if (actBal != null)
-                                        actBal.setText(CurrencyUtils.formatCurrency(getActivity(), b + lastIncome + lastExpense));
-                                } catch (Exception ignored) {
-                                }
-                            }
-                        });
-                    });
-                }
-            });
-        }));
-
-        // fetch category sums
-        repository.getCategorySumsInRange(effectiveUser, currentFrom, currentTo, (List<CategorySum> list) -> {
-            if (list == null) list = new ArrayList<>();
-            if (getActivity() == null) return;
-            List<CategorySum> finalList = list;
-            getActivity().runOnUiThread(() -> {
-                // default categories (keep in sync with AddTransactionActivity)
-                List<String> defaults = new ArrayList<>();
-                defaults.add(CategoryHelper.KEY_FOOD);
-                defaults.add(CategoryHelper.KEY_TRANSPORT);
-                defaults.add(CategoryHelper.KEY_SHOPPING);
-                defaults.add(CategoryHelper.KEY_EDUCATION);
-                defaults.add(CategoryHelper.KEY_ENTERTAINMENT);
-                defaults.add(CategoryHelper.KEY_OTHER);
-                defaults.add(CategoryHelper.KEY_INCOME);
-
-                // map returned sums by category
-                java.util.Map<String, Double> map = new java.util.HashMap<>();
-                for (CategorySum cs : finalList) {
-                    if (cs == null) continue;
-                    String k = cs.category == null ? CategoryHelper.KEY_OTHER : cs.category;
-                    map.put(k, cs.total == null ? 0.0 : cs.total);
-                }
-
-                // build merged list preserving default order
-                List<CategorySum> merged = new ArrayList<>();
-                for (String d : defaults) {
-                    Double v = map.remove(d);
-                    merged.add(new CategorySum(d, v == null ? 0.0 : v));
-                }
-                // add any extra categories returned from DB (not in defaults), sorted by total desc
-                List<CategorySum> extras = new ArrayList<>();
-                for (java.util.Map.Entry<String, Double> e : map.entrySet()) {
-                    extras.add(new CategorySum(e.getKey(), e.getValue()));
-                }
-                extras.sort((a, b) -> Double.compare(Math.abs(b.total == null ? 0.0 : b.total), Math.abs(a.total == null ? 0.0 : a.total)));
-                merged.addAll(extras);
-
-                categoryAdapter.setItems(merged);
-
-                // build maps for expense and income breakdown
-                Map<String, Double> expenseMap = new HashMap<>();
-                Map<String, Double> incomeMap = new HashMap<>();
-                for (CategorySum cs : merged) {
-                    if (cs == null) continue;
-                    double val = cs.total == null ? 0.0 : cs.total;
-                    String cat = cs.category == null ? "Khác" : cs.category;
-                    if (val < 0) {
-                        double a = Math.abs(val);
-                        if (a > 0.0) expenseMap.put(cat, expenseMap.getOrDefault(cat, 0.0) + a);
-                    } else if (val > 0) {
-                        incomeMap.put(cat, incomeMap.getOrDefault(cat, 0.0) + val);
-                    }
-                }
-
-                // populate expense pie
-                try {
-                    populatePieChart(pieChartExpense, expenseMap);
-                } catch (Exception ex) {
-                    android.util.Log.d("StatisticsFrag", "populate expense pie failed: " + ex.getMessage());
-                }
-            });
-        });
+        String month = YearMonth.from(Instant.ofEpochMilli(currentFrom).atZone(ZoneId.systemDefault())).toString();
+        String key = userId + "/" + month;
+        if (key.equals(observedKey)) {
+            MonthSummary s = monthSummaryLive.getValue();
+            if (s != null) showTotals(view, s.income, s.expense);
+            return;
+        }
+        stopObservingMonth();
+        observedKey = key;
+        monthSummaryLive = repository.getMonthSummaryLive(userId, month);
+        categorySumsLive = repository.getCategorySumsLive(userId, month, month);
+        monthSummaryLive.observe(getViewLifecycleOwner(), monthObserver);
+        categorySumsLive.observe(getViewLifecycleOwner(), categoryObserver);
     }
 
-    private void showMonthPicker() {
-        // compute earliest month from DB; ensure at least current month is present
-        repository.getMinTimestampForUser(currentUserId, (Long minTs) -> {
-            long startTs = minTs == null ? System.currentTimeMillis() : minTs;
-            // build list of months from startTs to now
-            List<String> labels = new ArrayList<>();
-            List<Long> monthFrom = new ArrayList<>();
-            List<Long> monthTo = new ArrayList<>();
-
-            Calendar cal = Calendar.getInstance();
-            cal.setTimeInMillis(startTs);
-            cal.set(Calendar.DAY_OF_MONTH, 1);
-            cal.set(Calendar.HOUR_OF_DAY, 0);
-            cal.set(Calendar.MINUTE, 0);
-            cal.set(Calendar.SECOND, 0);
-            cal.set(Calendar.MILLISECOND, 0);
-            long s = cal.getTimeInMillis();
-            Calendar now = Calendar.getInstance();
-            now.set(Calendar.DAY_OF_MONTH, 1);
-            now.set(Calendar.HOUR_OF_DAY, 0);
-            now.set(Calendar.MINUTE, 0);
-            now.set(Calendar.SECOND, 0);
-            now.set(Calendar.MILLISECOND, 0);
-            long endStart = now.getTimeInMillis();
-
-            // Ensure at least one month
-            if (s > endStart) s = endStart;
-
-            Calendar iter = Calendar.getInstance();
-            iter.setTimeInMillis(s);
-            while (iter.getTimeInMillis() <= endStart) {
-                int y = iter.get(Calendar.YEAR);
-                int m = iter.get(Calendar.MONTH); // 0-based
-                LocalDate ld = LocalDate.of(y, m + 1, 1);
-                String label = formatMonthYear(ld);
-                // compute from/to
-                long f = iter.getTimeInMillis();
-                Calendar endCal = (Calendar) iter.clone();
-                endCal.set(Calendar.DAY_OF_MONTH, endCal.getActualMaximum(Calendar.DAY_OF_MONTH));
-                endCal.set(Calendar.HOUR_OF_DAY, 23);
-                endCal.set(Calendar.MINUTE, 59);
-                endCal.set(Calendar.SECOND, 59);
-                long t = endCal.getTimeInMillis();
-                labels.add(label);
-                monthFrom.add(f);
-                monthTo.add(t);
-                // next month
-                iter.add(Calendar.MONTH, 1);
-            }
-
-            if (labels.isEmpty()) {
-                labels.add(formatMonthYear(LocalDate.now()));
-                monthFrom.add(currentFrom);
-                monthTo.add(currentTo);
-            }
-
-            // reverse labels so newest first
-            java.util.Collections.reverse(labels);
-            java.util.Collections.reverse(monthFrom);
-            java.util.Collections.reverse(monthTo);
-
-            if (getActivity() == null) return;
-            getActivity().runOnUiThread(() -> {
-                CharSequence[] items = labels.toArray(new CharSequence[0]);
-                androidx.appcompat.app.AlertDialog.Builder b = new androidx.appcompat.app.AlertDialog.Builder(requireContext());
-                b.setTitle("Chọn tháng");
-                b.setSingleChoiceItems(items, 0, (dialog, which) -> {
-                    // since array reversed, pick monthFrom.get(which)
-                    currentFrom = monthFrom.get(which);
-                    currentTo = monthTo.get(which);
-                    TextView tvMonthTitle = getView() == null ? null : getView().findViewById(R.id.tvMonthTitle);
-                    if (tvMonthTitle != null) tvMonthTitle.setText(labels.get(which));
-                    // refresh content
-                    if (getView() != null) refreshForCurrentMonth(getView());
-                    dialog.dismiss();
-                });
-                b.setNegativeButton("Hủy", (d, w) -> d.dismiss());
-                b.show();
-            });
-        });
+    private void stopObservingMonth() {
+        if (monthSummaryLive != null) monthSummaryLive.removeObserver(monthObserver);
+        if (categorySumsLive != null) categorySumsLive.removeObserver(categoryObserver);
+        observedKey = null;
     }
 
-    private void updateDisplayedMonthBalanceForUser(String userId) {
+    private final Observer<MonthSummary> monthObserver = s -> {
         View v = getView();
-        if (v == null) return;
-        TextView tvMonthBalance = v.findViewById(R.id.tvMonthBalance);
-        TextView tvTotalIncome = v.findViewById(R.id.tvTotalIncome);
-        TextView tvTotalExpense = v.findViewById(R.id.tvTotalExpense);
-        Double cached = null;
+        if (v != null && s != null) showTotals(v, s.income, s.expense);
+    };
+
+    private final Observer<List<CategorySum>> categoryObserver = this::showCategorySums;
+
+    private void showTotals(@NonNull View view, Double income, Double expense) {
+        TextView tvTotalIncome = view.findViewById(R.id.tvTotalIncome);
+        TextView tvTotalExpense = view.findViewById(R.id.tvTotalExpense);
+        TextView tvMonthBalance = view.findViewById(R.id.tvMonthBalance);
+        if (getActivity() == null) return;
+        // update last-known sums; the base comes from the observed balance and re-renders on change
+        lastIncome = income == null ? 0.0 : income;
+        lastExpense = expense == null ? 0.0 : expense;
+        double b = lastBase == null ? 0.0 : lastBase;
+        if (tvTotalIncome != null)
+            tvTotalIncome.setText(CurrencyUtils.formatCurrency(getContext(), lastIncome));
+        if (tvTotalExpense != null)
+            tvTotalExpense.setText(CurrencyUtils.formatCurrency(getContext(), Math.abs(lastExpense)));
+        if (tvMonthBalance != null)
+            tvMonthBalance.setText(CurrencyUtils.formatCurrency(getContext(), b + lastIncome + lastExpense));
+        // also update activity-level shared summaries if present
         try {
-            cached = repository.getBaseBalanceLive(userId).getValue();
+            TextView actInc = getActivity().findViewById(R.id.tvTotalIncome);
+            TextView actExp = getActivity().findViewById(R.id.tvTotalExpense);
+            TextView actBal = getActivity().findViewById(R.id.tvMonthBalance);
+            if (actInc != null)
+                actInc.setText(CurrencyUtils.formatCurrency(getActivity(), lastIncome));
+            if (actExp != null)
+                actExp.setText(CurrencyUtils.formatCurrency(getActivity(), Math.abs(lastExpense)));
+            if (actBal != null)
+                actBal.setText(CurrencyUtils.formatCurrency(getActivity(), b + lastIncome + lastExpense));
         } catch (Exception ignored) {
         }
-        if (cached != null) {
-            double b = cached;
-            if (tvTotalIncome != null)
-                tvTotalIncome.setText(CurrencyUtils.formatCurrency(getContext(), lastIncome));
-            if (tvTotalExpense != null)
-                tvTotalExpense.setText(CurrencyUtils.formatCurrency(getContext(), Math.abs(lastExpense)));
-            if (tvMonthBalance != null)
-                tvMonthBalance.setText(CurrencyUtils.formatCurrency(getContext(), b + lastIncome + lastExpense));
-        } else {
-            repository.getUserBaseBalance(userId, (Double base) -> {
-                double b = base == null ? 0.0 : base;
-                if (getActivity() == null) return;
-                getActivity().runOnUiThread(() -> {
-                    if (tvTotalIncome != null)
-                        tvTotalIncome.setText(CurrencyUtils.formatCurrency(getContext(), lastIncome));
-                    if (tvTotalExpense != null)
-                        tvTotalExpense.setText(CurrencyUtils.formatCurrency(getContext(), Math.abs(lastExpense)));
-                    if (tvMonthBalance != null)
-                        tvMonthBalance.setText(CurrencyUtils.formatCurrency(getContext(), b + lastIncome + lastExpense));
-                });
-            });
+    }
+
+    private void showCategorySums(List<CategorySum> list) {
+        if (list == null) list = new ArrayList<>();
+        if (getActivity() == null || categoryAdapter == null) return;
+        List<CategorySum> finalList = list;
+        // default categories (keep in sync with AddTransactionActivity)
+        List<String> defaults = new ArrayList<>();
+        defaults.add(CategoryHelper.KEY_FOOD);
+        defaults.add(CategoryHelper.KEY_TRANSPORT);
+        defaults.add(CategoryHelper.KEY_SHOPPING);
+        defaults.add(CategoryHelper.KEY_EDUCATION);
+        defaults.add(CategoryHelper.KEY_ENTERTAINMENT);
+        defaults.add(CategoryHelper.KEY_OTHER);
+        defaults.add(CategoryHelper.KEY_INCOME);
+
+        // map returned sums by category
+        java.util.Map<String, Double> map = new java.util.HashMap<>();
+        for (CategorySum cs : finalList) {
+            if (cs == null) continue;
+            String k = cs.category == null ? CategoryHelper.KEY_OTHER : cs.category;
+            map.put(k, cs.total == null ? 0.0 : cs.total);
+        }
+
+        // build merged list preserving default order
+        List<CategorySum> merged = new ArrayList<>();
+        for (String d : defaults) {
+            Double v = map.remove(d);
+            merged.add(new CategorySum(d, v == null ? 0.0 : v));
+        }
+        // add any extra categories returned from DB (not in defaults), sorted by total desc
+        List<CategorySum> extras = new ArrayList<>();
+        for (java.util.Map.Entry<String, Double> e : map.entrySet()) {
+            extras.add(new CategorySum(e.getKey(), e.getValue()));
+        }
+        extras.sort((a, b) -> Double.compare(Math.abs(b.total == null ? 0.0 : b.total), Math.abs(a.total == null ? 0.0 : a.total)));
+        merged.addAll(extras);
+
+        categoryAdapter.setItems(merged);
+
+        // build maps for expense and income breakdown
+        Map<String, Double> expenseMap = new HashMap<>();
+        Map<String, Double> incomeMap = new HashMap<>();
+        for (CategorySum cs : merged) {
+            if (cs == null) continue;
+            double val = cs.total == null ? 0.0 : cs.total;
+            String cat = cs.category == null ? "Khác" : cs.category;
+            if (val < 0) {
+                double a = Math.abs(val);
+                if (a > 0.0) expenseMap.put(cat, expenseMap.getOrDefault(cat, 0.0) + a);
+            } else if (val > 0) {
+                incomeMap.put(cat, incomeMap.getOrDefault(cat, 0.0) + val);
+            }
         }
+
+        // populate expense pie
+        try {
+            populatePieChart(pieChartExpense, expenseMap);
+        } catch (Exception ex) {
+            android.util.Log.d("StatisticsFrag", "populate expense pie failed: " + ex.getMessage());
+        }
+    }
+
+    private void showMonthPicker() {
+        // one grouped read of the months that have data, with their totals; a second tap replaces a
+        // read that is still queued and closing the screen drops it
+        requests.deliver("monthPicker", repository.getMonthSummariesAsync(currentUserId), (List<MonthSummary> months) -> {
+            if (getContext() == null) return;
+            ZoneId zone = ZoneId.systemDefault();
+            YearMonth thisMonth = YearMonth.now();
+            YearMonth shown = YearMonth.from(Instant.ofEpochMilli(currentFrom).atZone(zone));
+            List<YearMonth> yms = new ArrayList<>();
+            List<CharSequence> labels = new ArrayList<>();
+            for (MonthSummary m : months) {
+                YearMonth ym;
+                try { ym = YearMonth.parse(m.month); } catch (Exception e) { continue; }
+                yms.add(ym);
+                labels.add(formatMonthYear(ym.atDay(1)) + "\n+" + CurrencyUtils.formatCurrency(getContext(), m.income)
+                        + "  -" + CurrencyUtils.formatCurrency(getContext(), Math.abs(m.expense)));
+            }
+            // keep the current month selectable even before it has any rows, in its newest-first place
+            // (future-dated rows can put later months above it)
+            if (!yms.contains(thisMonth)) {
+                int at = 0;
+                while (at < yms.size() && yms.get(at).isAfter(thisMonth)) at++;
+                yms.add(at, thisMonth);
+                labels.add(at, formatMonthYear(thisMonth.atDay(1)));
+            }
+
+            androidx.appcompat.app.AlertDialog.Builder b = new androidx.appcompat.app.AlertDialog.Builder(requireContext());
+            b.setTitle("Chọn tháng");
+            b.setSingleChoiceItems(labels.toArray(new CharSequence[0]), yms.indexOf(shown), (dialog, which) -> {
+                YearMonth ym = yms.get(which);
+                currentFrom = ym.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                currentTo = ym.atEndOfMonth().atTime(23, 59, 59).atZone(zone).toInstant().toEpochMilli();
+                TextView tvMonthTitle = getView() == null ? null : getView().findViewById(R.id.tvMonthTitle);
+                if (tvMonthTitle != null) tvMonthTitle.setText(formatMonthYear(ym.atDay(1)));
+                // refresh content
+                if (getView() != null) refreshForCurrentMonth(getView());
+                dialog.dismiss();
+            });
+            b.setNegativeButton("Hủy", (d, w) -> d.dismiss());
+            b.show();
+        });
     }
 
     private void populatePieChart(PieChart chart, Map<String, Double> data) {
@@ -0,0 +1,58 @@
+package net.tiramisu.mdp;
+
+import android.graphics.Canvas;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+// Keeps the month header of the topmost visible row pinned to the top of the list, drawn over the
+// rows; the next month's header pushes it up as it arrives. The pinned copy is one view, bound and
+// measured again only when the section changes, so scrolling within a month costs a single draw.
+public class StickyHeaderDecoration extends RecyclerView.ItemDecoration {
+    private final TransactionAdapter adapter;
+    private TransactionAdapter.HeaderViewHolder pinned;
+    private MonthHeader bound;
+
+    public StickyHeaderDecoration(TransactionAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    @Override
+    public void onDrawOver(@NonNull Canvas c, @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        if (parent.getChildCount() == 0) return;
+        int topPos = parent.getChildAdapterPosition(parent.getChildAt(0));
+        MonthHeader header = adapter.sectionHeaderAt(topPos);
+        if (header == null) return;
+
+        View view = headerView(parent, header);
+        int top = parent.getPaddingTop();
+        // the next header on screen pushes the pinned one out
+        for (int i = 1; i < parent.getChildCount(); i++) {
+            View child = parent.getChildAt(i);
+            int pos = parent.getChildAdapterPosition(child);
+            if (pos <= topPos || !adapter.isHeader(pos)) continue;
+            if (child.getTop() < top + view.getHeight()) top = child.getTop() - view.getHeight();
+            break;
+        }
+
+        c.save();
+        c.translate(parent.getPaddingLeft(), top);
+        view.draw(c);
+        c.restore();
+    }
+
+    private View headerView(RecyclerView parent, MonthHeader header) {
+        if (pinned == null) pinned = TransactionAdapter.createHeaderHolder(parent);
+        View view = pinned.itemView;
+        int width = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+        if (header != bound || view.getWidth() != width) {
+            TransactionAdapter.bindHeader(pinned, header);
+            view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+            view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+            bound = header;
+        }
+        return view;
+    }
+}
@@ -8,7 +8,9 @@ import com.google.firebase.auth.FirebaseAuth;
 import net.tiramisu.mdp.model.TransactionEntity;
 import net.tiramisu.mdp.repo.TransactionRepository;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -32,18 +34,22 @@ public class TestDataGenerator {
      */
     public void generateTestData(Runnable callback) {
         String userId = getUserId();
+        List<TransactionEntity> batch = new ArrayList<>();
 
         // Generate transactions for current month (October 2025)
-        generateMonthTransactions(userId, 2025, Calendar.OCTOBER, 10, callback);
+        generateMonthTransactions(userId, 2025, Calendar.OCTOBER, 10, batch);
 
         // Generate transactions for previous month (September 2025)
-        generateMonthTransactions(userId, 2025, Calendar.SEPTEMBER, 10, null);
+        generateMonthTransactions(userId, 2025, Calendar.SEPTEMBER, 10, batch);
+
+        // One transaction and one change notification for the whole batch
+        repository.insertAll(batch, callback);
     }
 
     /**
-     * Generate transactions for a specific month
+     * Generate transactions for a specific month and add them to the batch
      */
-    private void generateMonthTransactions(String userId, int year, int month, int count, Runnable callback) {
+    private void generateMonthTransactions(String userId, int year, int month, int count, List<TransactionEntity> batch) {
         Calendar cal = Calendar.getInstance();
         cal.set(year, month, 1, 0, 0, 0);
         cal.set(Calendar.MILLISECOND, 0);
@@ -71,8 +77,7 @@ public class TestDataGenerator {
                 cal.getTimeInMillis()
             );
 
-            final boolean isLast = (i == incomeCount - 1) && (callback != null);
-            repository.insert(transaction, isLast ? callback : null);
+            batch.add(transaction);
         }
 
         // Generate expense transactions
@@ -100,7 +105,7 @@ public class TestDataGenerator {
                 cal.getTimeInMillis()
             );
 
-            repository.insert(transaction, null);
+            batch.add(transaction);
         }
 
         Log.d(TAG, "Generated " + count + " transactions for " + year + "/" + (month + 1));
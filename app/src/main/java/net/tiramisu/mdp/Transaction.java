@@ -1,20 +1,30 @@
 package net.tiramisu.mdp;
 
-public class Transaction {
+// What a list row shows, fully formatted: built once by TransactionFormatter when the rows are
+// loaded, so binding a row only copies these values into its views.
+public final class Transaction {
+    public final long id;
     public final String title;
+    public final String category;
     public final String date; // short date string
+    public final long timestamp; // for sorting
+    public final String month; // "yyyy-MM" in local time, the section the row belongs to
     public final double amount; // positive for income, negative for expense
+    public final String amountText; // amount in the display currency
+    public final int amountColor; // resolved color int
     public final int iconResId;
-    // optional extra long for sorting (timestamp)
-    public long extraLong = 0L;
-    // optional fields for detail view
-    public String category;
-    public String note;
 
-    public Transaction(String title, String date, double amount, int iconResId) {
+    public Transaction(long id, String title, String category, String date, long timestamp, String month,
+                       double amount, String amountText, int amountColor, int iconResId) {
+        this.id = id;
         this.title = title;
+        this.category = category;
         this.date = date;
+        this.timestamp = timestamp;
+        this.month = month;
         this.amount = amount;
+        this.amountText = amountText;
+        this.amountColor = amountColor;
         this.iconResId = iconResId;
     }
 }
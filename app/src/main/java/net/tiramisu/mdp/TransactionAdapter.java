@@ -7,93 +7,319 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 
-public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.ViewHolder> {
-    private final List<Transaction> items;
+// Every change is submitted as a new list; AsyncListDiffer computes the difference on its background
+// thread and dispatches only the inserted/removed/changed positions, so one new row costs one bind.
+// Rows are keyed by the Room primary key (stable ids).
+// With sections on, a MonthHeader precedes the first row of each month. Headers are derived from the
+// rows on every submit, so appends, inserts and deletes keep them in place; callers edit rows only.
+public class TransactionAdapter extends ListAdapter<Object, RecyclerView.ViewHolder> {
+    private static final int TYPE_ROW = 0;
+    private static final int TYPE_HEADER = 1;
+
+    private static final DiffUtil.ItemCallback<Object> DIFF = new DiffUtil.ItemCallback<Object>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Object a, @NonNull Object b) {
+            if (a instanceof Transaction && b instanceof Transaction) return ((Transaction) a).id == ((Transaction) b).id;
+            if (a instanceof MonthHeader && b instanceof MonthHeader) return ((MonthHeader) a).month.equals(((MonthHeader) b).month);
+            return false;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Object a, @NonNull Object b) {
+            // the same instance when TransactionFormatter reused it
+            if (a == b) return true;
+            if (a instanceof MonthHeader) {
+                MonthHeader x = (MonthHeader) a, y = (MonthHeader) b;
+                return Objects.equals(x.title, y.title) && Objects.equals(x.incomeText, y.incomeText)
+                        && Objects.equals(x.expenseText, y.expenseText);
+            }
+            Transaction x = (Transaction) a, y = (Transaction) b;
+            return x.amountColor == y.amountColor && x.iconResId == y.iconResId && x.timestamp == y.timestamp
+                    && Objects.equals(x.title, y.title) && Objects.equals(x.date, y.date)
+                    && Objects.equals(x.amountText, y.amountText) && Objects.equals(x.category, y.category);
+        }
+    };
+
+    // The last rows submitted (without headers). The displayed list (getCurrentList) catches up once
+    // its diff is done, so edits made in a row build on this one and are not lost.
+    private List<Transaction> latest = Collections.emptyList();
+    // header for a "yyyy-MM" month; null while the list is flat
+    private Function<String, MonthHeader> headerFor;
+    // for each displayed position, the position of its section header (-1 if none)
+    private int[] sectionOf = new int[0];
     private OnItemClickListener listener;
+    // multi-select: ids of the selected rows; on only when a selection listener is set
+    private final Set<Long> selectedIds = new HashSet<>();
+    private OnSelectionChangedListener selectionListener;
 
     public interface OnItemClickListener {
         void onItemClick(Transaction transaction);
     }
 
-    public TransactionAdapter(List<Transaction> items) {
-        this.items = items;
+    public interface OnSelectionChangedListener {
+        void onSelectionChanged(int count);
+    }
+
+    public TransactionAdapter() {
+        super(DIFF);
+        setHasStableIds(true);
     }
 
     public void setOnItemClickListener(OnItemClickListener listener) {
         this.listener = listener;
     }
 
+    // Enables multi-select: a long press selects a row, and while anything is selected a tap toggles
+    // rows instead of opening them
+    public void setOnSelectionChangedListener(OnSelectionChangedListener listener) {
+        this.selectionListener = listener;
+    }
+
+    public List<Long> getSelectedIds() {
+        return new ArrayList<>(selectedIds);
+    }
+
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) return;
+        List<Long> was = new ArrayList<>(selectedIds);
+        selectedIds.clear();
+        for (long id : was) notifyRowChanged(id);
+        if (selectionListener != null) selectionListener.onSelectionChanged(0);
+    }
+
+    private void toggleSelected(Transaction t) {
+        if (!selectedIds.remove(t.id)) selectedIds.add(t.id);
+        notifyRowChanged(t.id);
+        selectionListener.onSelectionChanged(selectedIds.size());
+    }
+
+    private void notifyRowChanged(long id) {
+        List<Object> shown = getCurrentList();
+        for (int i = 0; i < shown.size(); i++) {
+            Object item = shown.get(i);
+            if (item instanceof Transaction && ((Transaction) item).id == id) {
+                notifyItemChanged(i);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return getItem(position) instanceof MonthHeader ? TYPE_HEADER : TYPE_ROW;
+    }
+
     @NonNull
     @Override
-    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        if (viewType == TYPE_HEADER) return createHeaderHolder(parent);
         // Use the provided item_transaction_mini layout which exists in the project
         View v = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_transaction_mini, parent, false);
-        return new ViewHolder(v);
+        final ViewHolder holder = new ViewHolder(v);
+        // one listener per holder, not per bind
+        v.setOnClickListener(view -> {
+            int pos = holder.getBindingAdapterPosition();
+            if (pos == RecyclerView.NO_POSITION || !(getItem(pos) instanceof Transaction)) return;
+            Transaction t = (Transaction) getItem(pos);
+            if (selectionListener != null && !selectedIds.isEmpty()) toggleSelected(t);
+            else if (listener != null) listener.onItemClick(t);
+        });
+        v.setOnLongClickListener(view -> {
+            int pos = holder.getBindingAdapterPosition();
+            if (selectionListener == null || pos == RecyclerView.NO_POSITION || !(getItem(pos) instanceof Transaction)) return false;
+            toggleSelected((Transaction) getItem(pos));
+            return true;
+        });
+        return holder;
     }
 
+    // Everything shown was formatted when the rows were loaded (TransactionFormatter)
     @Override
-    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        Transaction t = items.get(position);
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder vh, int position) {
+        Object item = getItem(position);
+        if (item instanceof MonthHeader) {
+            bindHeader((HeaderViewHolder) vh, (MonthHeader) item);
+            return;
+        }
+        Transaction t = (Transaction) item;
+        ViewHolder holder = (ViewHolder) vh;
         holder.title.setText(t.title);
         holder.sub.setText(t.date);
-        // Format amount using CurrencyUtils
-        holder.amount.setText(CurrencyUtils.formatCurrency(holder.amount.getContext(), t.amount));
-        // color negative in red, positive in green
-        if (t.amount < 0) {
-            holder.amount.setTextColor(ContextCompat.getColor(holder.amount.getContext(), android.R.color.holo_red_dark));
-        } else {
-            holder.amount.setTextColor(ContextCompat.getColor(holder.amount.getContext(), android.R.color.holo_green_dark));
+        holder.amount.setText(t.amountText);
+        holder.amount.setTextColor(t.amountColor);
+        if (t.iconResId != 0 && t.iconResId != holder.iconResId) {
+            holder.icon.setImageResource(t.iconResId);
+            holder.iconResId = t.iconResId;
         }
-        if (t.iconResId != 0) holder.icon.setImageResource(t.iconResId);
+        holder.card.setCardBackgroundColor(selectedIds.contains(t.id) ? holder.selectedColor : holder.normalColor);
+    }
 
-        // Set click listener
-        holder.itemView.setOnClickListener(v -> {
-            if (listener != null) {
-                listener.onItemClick(t);
-            }
-        });
+    @Override
+    public long getItemId(int position) {
+        Object item = getItem(position);
+        return item instanceof MonthHeader ? ((MonthHeader) item).id : ((Transaction) item).id;
+    }
+
+    static HeaderViewHolder createHeaderHolder(ViewGroup parent) {
+        View v = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_month_header, parent, false);
+        return new HeaderViewHolder(v);
+    }
+
+    // Also used by StickyHeaderDecoration for the pinned copy
+    static void bindHeader(HeaderViewHolder holder, MonthHeader header) {
+        holder.title.setText(header.title);
+        holder.income.setText(header.incomeText);
+        holder.expense.setText(header.expenseText);
+        holder.income.setVisibility(header.incomeText == null ? View.GONE : View.VISIBLE);
+        holder.expense.setVisibility(header.expenseText == null ? View.GONE : View.VISIBLE);
+    }
+
+    // Header of the section the displayed position belongs to, or null in a flat list
+    MonthHeader sectionHeaderAt(int position) {
+        if (position < 0 || position >= sectionOf.length || sectionOf[position] < 0) return null;
+        return (MonthHeader) getCurrentList().get(sectionOf[position]);
+    }
+
+    boolean isHeader(int position) {
+        return position >= 0 && position < getItemCount() && getItem(position) instanceof MonthHeader;
     }
 
     @Override
-    public int getItemCount() {
-        return items.size();
+    public void onCurrentListChanged(@NonNull List<Object> previous, @NonNull List<Object> current) {
+        int[] sections = new int[current.size()];
+        int header = -1;
+        for (int i = 0; i < sections.length; i++) {
+            if (current.get(i) instanceof MonthHeader) header = i;
+            sections[i] = header;
+        }
+        sectionOf = sections;
+    }
+
+    // Turn month sections on (headerFor gives the header of a "yyyy-MM" month) or off (null).
+    // Calling it again with new headers (e.g. refreshed subtotals) re-renders them.
+    public void setSections(Function<String, MonthHeader> headerFor) {
+        this.headerFor = headerFor;
+        submit(latest, null);
+    }
+
+    // Rows the list holds once pending diffs are applied; use this rather than getItemCount() to
+    // decide what to load next
+    public int getLoadedCount() {
+        return latest.size();
+    }
+
+    // Replace full list of items (for refresh); rows that did not change keep their views
+    public void setItems(List<Transaction> list) {
+        setItems(list, null);
     }
 
-    // Allow adding a new transaction at the top
-    public void addTransaction(Transaction tx) {
-        items.add(0, tx);
-        notifyItemInserted(0);
+    // onCommitted runs on the main thread once the new list is displayed
+    public void setItems(List<Transaction> list, Runnable onCommitted) {
+        submit(list == null ? new ArrayList<>() : new ArrayList<>(list), onCommitted);
     }
 
-    // Replace full list of items (for refresh)
-    public void setItems(java.util.List<Transaction> list) {
-        items.clear();
-        if (list != null) items.addAll(list);
-        notifyDataSetChanged();
+    // Append a page of items at the end (for paged loading)
+    public void addItems(List<Transaction> list) {
+        if (list == null || list.isEmpty()) return;
+        List<Transaction> next = new ArrayList<>(latest);
+        next.addAll(list);
+        submit(next, null);
+    }
+
+    // Remove the row with the given transaction id, if loaded; returns true if one was removed
+    public boolean removeById(long id) {
+        for (int i = 0; i < latest.size(); i++) {
+            if (latest.get(i).id == id) {
+                List<Transaction> next = new ArrayList<>(latest);
+                next.remove(i);
+                submit(next, null);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Insert at the position that keeps the list ordered by 'order'; returns that position
+    public int insertSorted(Transaction tx, Comparator<Transaction> order) {
+        int pos = positionFor(tx, order);
+        List<Transaction> next = new ArrayList<>(latest);
+        next.add(pos, tx);
+        submit(next, null);
+        return pos;
+    }
+
+    // Position 'tx' would take in the list ordered by 'order' (getLoadedCount() if after every row)
+    public int positionFor(Transaction tx, Comparator<Transaction> order) {
+        int pos = 0;
+        while (pos < latest.size() && order.compare(latest.get(pos), tx) <= 0) pos++;
+        return pos;
     }
 
     public void clear() {
-        items.clear();
-        notifyDataSetChanged();
+        submit(new ArrayList<>(), null);
+    }
+
+    private void submit(List<Transaction> next, Runnable onCommitted) {
+        latest = next;
+        List<Object> display = new ArrayList<>(next.size() + (headerFor == null ? 0 : 8));
+        String month = null;
+        for (Transaction t : next) {
+            if (headerFor != null && t.month != null && !t.month.equals(month)) {
+                month = t.month;
+                display.add(headerFor.apply(month));
+            }
+            display.add(t);
+        }
+        submitList(display, onCommitted);
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
+        CardView card;
         ImageView icon;
         TextView title;
         TextView sub;
         TextView amount;
+        int iconResId; // drawable currently shown, to skip reloading it on rebind
+        final int normalColor;
+        final int selectedColor;
 
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
+            card = (CardView) itemView;
+            normalColor = ContextCompat.getColor(itemView.getContext(), R.color.background);
+            selectedColor = ContextCompat.getColor(itemView.getContext(), R.color.grayLight);
             icon = itemView.findViewById(R.id.ivIcon);
             title = itemView.findViewById(R.id.tvTitle);
             sub = itemView.findViewById(R.id.tvSub);
             amount = itemView.findViewById(R.id.tvAmount);
         }
     }
+
+    public static class HeaderViewHolder extends RecyclerView.ViewHolder {
+        TextView title;
+        TextView income;
+        TextView expense;
+
+        public HeaderViewHolder(@NonNull View itemView) {
+            super(itemView);
+            title = itemView.findViewById(R.id.tvMonth);
+            income = itemView.findViewById(R.id.tvMonthIncome);
+            expense = itemView.findViewById(R.id.tvMonthExpense);
+        }
+    }
 }
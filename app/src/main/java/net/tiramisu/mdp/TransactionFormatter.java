@@ -0,0 +1,125 @@
+package net.tiramisu.mdp;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import androidx.core.content.ContextCompat;
+
+import net.tiramisu.mdp.model.MonthSummary;
+import net.tiramisu.mdp.model.TransactionRow;
+
+import java.text.SimpleDateFormat;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+// Turns query rows into the Transaction view-state the lists bind. Amount, date, title and icon
+// are formatted here once, on the thread that loads the rows, so onBindViewHolder formats nothing.
+// Rows built before are reused while their content is unchanged: a re-delivered page or recent list
+// allocates nothing new, and DiffUtil sees the same instances. The currency and locale are fixed at
+// construction, as are the localized strings (so no Context is kept); build a new formatter when
+// isCurrent() turns false.
+public class TransactionFormatter {
+    private static final int CACHE_SIZE = 512;
+
+    private final Locale locale;
+    private final String currencyCode;
+    private final int incomeColor;
+    private final int expenseColor;
+    private final SimpleDateFormat dateFormat;
+    private final DateTimeFormatter monthTitleFormat;
+    private final Calendar calendar = Calendar.getInstance();
+    private final LruCache<Long, Transaction> cache = new LruCache<>(CACHE_SIZE);
+    // category key -> localized name, and the title of a row with neither title nor category
+    private final Map<String, String> categoryNames = new HashMap<>();
+    private final String defaultTitle;
+
+    public TransactionFormatter(Context ctx) {
+        this.locale = localeOf(ctx);
+        this.currencyCode = CurrencyUtils.getDisplayCurrencyCode(ctx);
+        this.incomeColor = ContextCompat.getColor(ctx, android.R.color.holo_green_dark);
+        this.expenseColor = ContextCompat.getColor(ctx, android.R.color.holo_red_dark);
+        this.dateFormat = new SimpleDateFormat("dd/MM/yyyy", locale);
+        this.monthTitleFormat = DateTimeFormatter.ofPattern("MMMM - yyyy", locale);
+        for (String key : CategoryHelper.getCategoryKeys()) categoryNames.put(key, CategoryHelper.getLocalizedCategory(ctx, key));
+        categoryNames.put(CategoryHelper.KEY_INCOME, CategoryHelper.getLocalizedCategory(ctx, CategoryHelper.KEY_INCOME));
+        this.defaultTitle = ctx.getString(R.string.transaction_title_default);
+    }
+
+    // False once the user picked another currency or language
+    public boolean isCurrent(Context ctx) {
+        return locale.equals(localeOf(ctx)) && currencyCode.equals(CurrencyUtils.getDisplayCurrencyCode(ctx));
+    }
+
+    // Called from read threads and the main thread; SimpleDateFormat and the cache need the lock
+    public synchronized Transaction format(TransactionRow te) {
+        Transaction cached = cache.get(te.id);
+        if (cached != null && cached.timestamp == te.timestamp && cached.amount == te.amount
+                && Objects.equals(cached.category, te.category) && titleOf(te).equals(cached.title)) {
+            return cached;
+        }
+
+        String dateStr = "";
+        try { dateStr = dateFormat.format(new Date(te.timestamp)); } catch (Exception ignored) {}
+
+        int icon = R.drawable.ic_transaction;
+        if (CategoryHelper.KEY_FOOD.equals(te.category)) icon = R.drawable.ic_food;
+        if (CategoryHelper.KEY_TRANSPORT.equals(te.category)) icon = R.drawable.ic_transport;
+        if (CategoryHelper.KEY_SHOPPING.equals(te.category)) icon = R.drawable.ic_shopping;
+        if (CategoryHelper.KEY_ENTERTAINMENT.equals(te.category)) icon = R.drawable.ic_entertainment;
+
+        Transaction t = new Transaction(te.id, titleOf(te), te.category, dateStr, te.timestamp, monthOf(te.timestamp), te.amount,
+                CurrencyUtils.formatCurrency(te.amount, currencyCode), te.amount < 0 ? expenseColor : incomeColor, icon);
+        cache.put(te.id, t);
+        return t;
+    }
+
+    public List<Transaction> formatAll(List<TransactionRow> rows) {
+        List<Transaction> out = new ArrayList<>(rows.size());
+        for (TransactionRow te : rows) {
+            if (te != null) out.add(format(te));
+        }
+        return out;
+    }
+
+    // Header for a month of the sectioned list; summary may be null while its totals are not loaded
+    public synchronized MonthHeader formatHeader(String month, MonthSummary summary) {
+        String title = month;
+        try {
+            // e.g. "tháng 10 - 2025" -> "Tháng 10 - 2025"
+            String formatted = YearMonth.parse(month).format(monthTitleFormat);
+            if (!formatted.isEmpty()) title = formatted.substring(0, 1).toUpperCase(locale) + formatted.substring(1);
+        } catch (Exception ignored) {}
+        if (summary == null) return new MonthHeader(month, title, null, null);
+        return new MonthHeader(month, title, "+" + CurrencyUtils.formatCurrency(summary.income, currencyCode),
+                "-" + CurrencyUtils.formatCurrency(Math.abs(summary.expense), currencyCode));
+    }
+
+    // Local-time month of a timestamp, in the "yyyy-MM" form of monthly_rollups
+    private String monthOf(long timestamp) {
+        calendar.setTimeInMillis(timestamp);
+        return String.format(Locale.ROOT, "%04d-%02d", calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1);
+    }
+
+    // Use title if available, otherwise use localized category; returns stored strings only, so the
+    // cache-hit check in format() allocates nothing
+    private String titleOf(TransactionRow te) {
+        if (te.title != null && !te.title.isEmpty()) return te.title;
+        if (te.category != null && !te.category.isEmpty()) {
+            String name = categoryNames.get(te.category);
+            return name != null ? name : te.category;
+        }
+        return defaultTitle;
+    }
+
+    private static Locale localeOf(Context ctx) {
+        return ctx.getResources().getConfiguration().getLocales().get(0);
+    }
+}
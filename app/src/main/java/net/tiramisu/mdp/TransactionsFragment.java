@@ -1,19 +1,26 @@
 package net.tiramisu.mdp;
 
+import android.app.AlertDialog;
 import android.os.Bundle;
-import android.util.Pair;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import android.widget.EditText;
 import android.widget.Spinner;
+import android.widget.Toast;
 import android.widget.AdapterView;
 import android.text.TextWatcher;
 import android.text.Editable;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 import androidx.fragment.app.Fragment;
@@ -23,18 +30,29 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.chip.ChipGroup;
 import com.google.firebase.auth.FirebaseAuth;
 
+import net.tiramisu.mdp.model.MonthSummary;
 import net.tiramisu.mdp.model.TransactionEntity;
+import net.tiramisu.mdp.model.TransactionRow;
+import net.tiramisu.mdp.repo.TransactionChange;
+import net.tiramisu.mdp.repo.TransactionChangeListener;
+import net.tiramisu.mdp.repo.TransactionPage;
+import net.tiramisu.mdp.repo.RequestScope;
 import net.tiramisu.mdp.repo.TransactionRepository;
 
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import android.content.res.Configuration;
 import android.content.res.Resources;
@@ -43,10 +61,30 @@ public class TransactionsFragment extends Fragment {
     private static final int REQUEST_VIEW_DETAILS = 1001;
 
     private TransactionAdapter adapter;
+    // builds the rows' view-state off the main thread; replaced when currency or language changes
+    private volatile TransactionFormatter formatter;
     private TransactionRepository repository;
 
-    // cached full list from DB (used for filtering/sorting)
-    private final List<TransactionEntity> allEntities = new ArrayList<>();
+    // keyset paging state: the list is loaded page by page as the user scrolls
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_DISTANCE = 10;
+    // a search starts once typing pauses this long
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+    private TransactionRow pageCursor = null;
+    private boolean hasMorePages = true;
+    private boolean loadingPage = false;
+    private boolean restartPending = false;
+    // month sections (date orders only): months that have rows, in list order, from monthly_rollups.
+    // Pages are read one month at a time; pageMonth is the month the next page comes from (null when
+    // done). months stays null in the amount orders, where the list is flat.
+    private List<String> months = null;
+    private String pageMonth = null;
+    private final Map<String, MonthSummary> monthTotals = new HashMap<>();
+    private final Map<String, MonthHeader> monthHeaders = new HashMap<>();
+    // in-flight reads of this view; a reload supersedes the pending page request
+    private RequestScope requests;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = this::applyFilters;
 
     // UI controls
     private EditText edtSearch;
@@ -54,19 +92,11 @@ public class TransactionsFragment extends Fragment {
     private ChipGroup chips;
     private int currentSortMode = 0; // 0=date desc, 1=date asc, 2=amount desc, 3=amount asc
 
-    // listener - called by repository when data changes
-    private final Runnable repoListener = () -> {
-        String userId = "local";
-        try { if (FirebaseAuth.getInstance().getCurrentUser() != null) userId = FirebaseAuth.getInstance().getCurrentUser().getUid(); } catch (Exception ignored) {}
-        repository.getByUser(userId, entities -> {
-            if (entities == null) entities = new ArrayList<>();
-            synchronized (allEntities) {
-                allEntities.clear();
-                allEntities.addAll(entities);
-            }
-            if (getActivity() != null) getActivity().runOnUiThread(this::applyFilters);
-        });
-    };
+    // multi-select contextual bar; non-null while rows are selected
+    private ActionMode selectionMode;
+
+    // listener - called by repository (main thread) with what changed
+    private final TransactionChangeListener repoListener = this::onTransactionsChanged;
 
     public TransactionsFragment() {}
 
@@ -81,6 +111,8 @@ public class TransactionsFragment extends Fragment {
         super.onViewCreated(view, savedInstanceState);
 
         repository = TransactionRepository.getInstance(requireContext());
+        requests = RequestScope.of(getViewLifecycleOwner());
+        formatter = new TransactionFormatter(requireContext());
 
         // find UI
         edtSearch = view.findViewById(R.id.edtSearch);
@@ -105,7 +137,7 @@ public class TransactionsFragment extends Fragment {
         // setup RecyclerView
         if (rv != null) {
             rv.setLayoutManager(new LinearLayoutManager(requireContext()));
-            adapter = new TransactionAdapter(new ArrayList<>());
+            adapter = new TransactionAdapter();
 
             // Set click listener to open transaction details
             adapter.setOnItemClickListener(transaction -> {
@@ -114,12 +146,24 @@ public class TransactionsFragment extends Fragment {
                 intent.putExtra("EXTRA_DATE", transaction.date);
                 intent.putExtra("EXTRA_AMOUNT", transaction.amount);
                 intent.putExtra("EXTRA_CATEGORY", transaction.category);
-                intent.putExtra("EXTRA_NOTE", transaction.note);
-                intent.putExtra("EXTRA_TIMESTAMP", transaction.extraLong); // Pass timestamp
+                intent.putExtra("EXTRA_ID", transaction.id); // note is loaded by id
                 startActivityForResult(intent, REQUEST_VIEW_DETAILS);
             });
+            // long press starts multi-select; the contextual bar shows the count and deletes them together
+            adapter.setOnSelectionChangedListener(this::onSelectionChanged);
 
             rv.setAdapter(adapter);
+            rv.addItemDecoration(new StickyHeaderDecoration(adapter));
+            // fetch the next page when the user scrolls close to the end of what is loaded
+            rv.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                    if (dy <= 0) return;
+                    LinearLayoutManager lm = (LinearLayoutManager) recyclerView.getLayoutManager();
+                    if (lm == null) return;
+                    if (lm.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) loadNextPage();
+                }
+            });
             ViewCompat.setOnApplyWindowInsetsListener(rv, (v, insets) -> {
                 int bottom = insets.getInsets(WindowInsetsCompat.Type.systemBars()).bottom;
                 v.setPadding(v.getPaddingLeft(), v.getPaddingTop(), v.getPaddingRight(), Math.max(v.getPaddingBottom(), bottom + 16));
@@ -131,7 +175,7 @@ public class TransactionsFragment extends Fragment {
         if (edtSearch != null) {
             edtSearch.addTextChangedListener(new TextWatcher() {
                 @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
-                @Override public void onTextChanged(CharSequence s, int start, int before, int count) { applyFilters(); }
+                @Override public void onTextChanged(CharSequence s, int start, int before, int count) { onSearchTextChanged(); }
                 @Override public void afterTextChanged(Editable s) {}
             });
         }
@@ -152,17 +196,8 @@ public class TransactionsFragment extends Fragment {
             chips.setOnCheckedStateChangeListener((group, checkedIds) -> applyFilters());
         }
 
-        // load cache from DB initially
-        String userId = "local";
-        try { if (FirebaseAuth.getInstance().getCurrentUser() != null) userId = FirebaseAuth.getInstance().getCurrentUser().getUid(); } catch (Exception ignored) {}
-        repository.getByUser(userId, entities -> {
-            if (entities == null) entities = new ArrayList<>();
-            synchronized (allEntities) {
-                allEntities.clear();
-                allEntities.addAll(entities);
-            }
-            if (getActivity() != null) getActivity().runOnUiThread(this::applyFilters);
-        });
+        // load the first page from DB
+        applyFilters();
 
         // also refresh sums (month totals)
         refreshSums(view);
@@ -173,6 +208,11 @@ public class TransactionsFragment extends Fragment {
         super.onStart();
         if (repository != null) repository.registerChangeListener(repoListener);
         View v = getView(); if (v != null) refreshSums(v);
+        // loaded rows carry formatted amounts and dates: rebuild them if the settings changed
+        if (v != null && formatter != null && !formatter.isCurrent(requireContext())) {
+            formatter = new TransactionFormatter(requireContext());
+            applyFilters();
+        }
     }
 
     @Override
@@ -181,30 +221,75 @@ public class TransactionsFragment extends Fragment {
         if (repository != null) repository.unregisterChangeListener(repoListener);
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        searchHandler.removeCallbacks(searchRunnable);
+        if (selectionMode != null) selectionMode.finish();
+    }
+
+    private void onSelectionChanged(int count) {
+        if (count == 0) {
+            if (selectionMode != null) selectionMode.finish();
+            return;
+        }
+        if (selectionMode == null && getActivity() instanceof AppCompatActivity) {
+            selectionMode = ((AppCompatActivity) getActivity()).startSupportActionMode(selectionCallback);
+        }
+        if (selectionMode != null) selectionMode.setTitle(getString(R.string.transactions_selected, count));
+    }
+
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.menu_transaction_selection, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if (item.getItemId() != R.id.action_delete_selected) return false;
+            confirmDeleteSelected();
+            return true;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            selectionMode = null;
+            if (adapter != null) adapter.clearSelection();
+        }
+    };
+
+    // One bulk delete for the selected rows; the balance is adjusted once, and the rows and month sums
+    // update through the change listener
+    private void confirmDeleteSelected() {
+        final List<Long> ids = adapter.getSelectedIds();
+        if (ids.isEmpty()) return;
+        new AlertDialog.Builder(requireContext())
+                .setTitle(getString(R.string.delete_transactions_title, ids.size()))
+                .setMessage(R.string.delete_transactions_message)
+                .setPositiveButton(R.string.delete, (dialog, which) -> repository.deleteTransactions(ids, currentUserId(), removed -> {
+                    if (getContext() == null) return;
+                    Toast.makeText(getContext(), getString(R.string.delete_transactions_success, removed), Toast.LENGTH_SHORT).show();
+                    if (selectionMode != null) selectionMode.finish();
+                }))
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
     @Override
     public void onActivityResult(int requestCode, int resultCode, @Nullable android.content.Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == REQUEST_VIEW_DETAILS && resultCode == android.app.Activity.RESULT_OK) {
             // Transaction was deleted or modified, refresh the list
-            String userId = "local";
-            try {
-                if (FirebaseAuth.getInstance().getCurrentUser() != null)
-                    userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
-            } catch (Exception ignored) {}
-
-            final String finalUserId = userId;
-            repository.getByUser(userId, entities -> {
-                if (entities == null) entities = new ArrayList<>();
-                synchronized (allEntities) {
-                    allEntities.clear();
-                    allEntities.addAll(entities);
-                }
-                if (getActivity() != null) getActivity().runOnUiThread(() -> {
-                    applyFilters();
-                    View v = getView();
-                    if (v != null) refreshSums(v);
-                });
-            });
+            applyFilters();
+            View v = getView();
+            if (v != null) refreshSums(v);
         }
     }
 
@@ -226,147 +311,288 @@ public class TransactionsFragment extends Fragment {
             }
         }
 
-        long from, to;
+        long[] month = currentMonthRange();
+        String userId = currentUserId();
+
+        long finalFrom = month[0], finalTo = month[1];
+        String finalUserId = userId;
+        // income and expense are independent: issue both reads, continue on the main thread once both are in
+        CompletableFuture<Double> incomeF = requests.track("sumIncome", repository.getSumIncomeInRangeAsync(userId, finalFrom, finalTo));
+        CompletableFuture<Double> expenseF = requests.track("sumExpense", repository.getSumExpenseInRangeAsync(finalUserId, finalFrom, finalTo));
+        incomeF.thenAcceptBothAsync(expenseF, (income, expense) -> {
+            if (requests.isDestroyed()) return;
+            double inc = income == null ? 0.0 : income;
+            double exp = expense == null ? 0.0 : expense;
+            // answered on the main thread from the balances table
+            repository.getUserBaseBalance(finalUserId, (Double base) -> {
+                if (requests.isDestroyed()) return;
+                double b = base == null ? 0.0 : base;
+                if (tvTotalIncome != null) tvTotalIncome.setText(CurrencyUtils.formatCurrency(getContext(), inc));
+                if (tvTotalExpense != null) tvTotalExpense.setText(CurrencyUtils.formatCurrency(getContext(), Math.abs(exp)));
+                if (tvMonthBalance != null) tvMonthBalance.setText(CurrencyUtils.formatCurrency(getContext(), b + inc + exp));
+            });
+        }, TransactionRepository.mainThread());
+    }
+
+    // [from, to] in millis of the current month (the range refreshSums shows)
+    private static long[] currentMonthRange() {
         try {
             LocalDate now = LocalDate.now();
             LocalDate start = now.withDayOfMonth(1);
             LocalDate end = now.withDayOfMonth(now.lengthOfMonth());
-            from = start.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
-            to = end.atTime(23,59,59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            return new long[]{
+                    start.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                    end.atTime(23,59,59).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+            };
         } catch (Exception ex) {
             Calendar cal = Calendar.getInstance();
             cal.set(Calendar.DAY_OF_MONTH, 1);
             cal.set(Calendar.HOUR_OF_DAY, 0); cal.set(Calendar.MINUTE, 0); cal.set(Calendar.SECOND,0); cal.set(Calendar.MILLISECOND,0);
-            from = cal.getTimeInMillis();
+            long from = cal.getTimeInMillis();
             cal.set(Calendar.DAY_OF_MONTH, cal.getActualMaximum(Calendar.DAY_OF_MONTH));
             cal.set(Calendar.HOUR_OF_DAY,23); cal.set(Calendar.MINUTE,59); cal.set(Calendar.SECOND,59);
-            to = cal.getTimeInMillis();
+            return new long[]{from, cal.getTimeInMillis()};
         }
+    }
 
+    private static String currentUserId() {
         String userId = "local";
         try { if (FirebaseAuth.getInstance().getCurrentUser() != null) userId = FirebaseAuth.getInstance().getCurrentUser().getUid(); } catch (Exception ignored) {}
-
-        long finalFrom = from, finalTo = to;
-        String finalUserId = userId;
-        repository.getSumIncomeInRange(userId, finalFrom, finalTo, income -> repository.getSumExpenseInRange(finalUserId, finalFrom, finalTo, expense -> {
-            if (getActivity() == null) return;
-            getActivity().runOnUiThread(() -> {
-                double inc = income == null ? 0.0 : income;
-                double exp = expense == null ? 0.0 : expense;
-                Double cached = null;
-                try { cached = repository.getBaseBalanceLive(finalUserId).getValue(); } catch (Exception ignored) {}
-                if (cached != null) {
-                    double b = cached;
-                    if (tvTotalIncome != null) tvTotalIncome.setText(CurrencyUtils.formatCurrency(getContext(), inc));
-                    if (tvTotalExpense != null) tvTotalExpense.setText(CurrencyUtils.formatCurrency(getContext(), Math.abs(exp)));
-                    if (tvMonthBalance != null) tvMonthBalance.setText(CurrencyUtils.formatCurrency(getContext(), b + inc + exp));
-                } else {
-                    repository.getUserBaseBalance(finalUserId, (Double base) -> {
-                        double b = base == null ? 0.0 : base;
-                        if (getActivity() == null) return;
-                        getActivity().runOnUiThread(() -> {
-                            if (tvTotalIncome != null) tvTotalIncome.setText(CurrencyUtils.formatCurrency(getContext(), inc));
-                            if (tvTotalExpense != null) tvTotalExpense.setText(CurrencyUtils.formatCurrency(getContext(), Math.abs(exp)));
-                            if (tvMonthBalance != null) tvMonthBalance.setText(CurrencyUtils.formatCurrency(getContext(), b + inc + exp));
-                        });
-                    });
-                }
-            });
-        }));
+        return userId;
     }
 
-    // Apply current search, chip-filter and sort to allEntities and update adapter
-    private void applyFilters() {
-        if (adapter == null) return;
-        View view = getView(); if (view == null) return;
-
-        String q = "";
-        if (edtSearch != null) q = normalizeForSearch(edtSearch.getText().toString().trim());
-
-        // chip filter
-        String typeFilter = null; // null=all, "income" or "expense"
+    // null=all, "income" or "expense"
+    private String currentTypeFilter() {
         if (chips != null) {
             int checked = chips.getCheckedChipId();
-            if (checked == R.id.chIncome) typeFilter = "income";
-            else if (checked == R.id.chExpense) typeFilter = "expense";
+            if (checked == R.id.chIncome) return "income";
+            if (checked == R.id.chExpense) return "expense";
         }
+        return null;
+    }
 
-        // build filtered pairs (Transaction + timestamp) so we can sort by timestamp if needed
-        List<Pair<Transaction, Long>> pairs = new ArrayList<>();
-        SimpleDateFormat df = new SimpleDateFormat("dd/MM/yyyy", getCurrentLocale());
-
-        synchronized (allEntities) {
-            for (TransactionEntity te : allEntities) {
-                if (te == null) continue;
-                if (typeFilter != null && !typeFilter.equalsIgnoreCase(te.type == null ? "" : te.type)) continue;
-
-                String dateStr = "";
-                try { dateStr = df.format(new Date(te.timestamp)); } catch (Exception ignored) {}
-
-                boolean match = q.isEmpty();
-                if (!match) {
-                    String title = te.title == null ? "" : normalizeForSearch(te.title);
-                    String note = te.note == null ? "" : normalizeForSearch(te.note);
-                    String cat = te.category == null ? "" : normalizeForSearch(te.category);
-                    String dateNorm = normalizeForSearch(dateStr == null ? "" : dateStr);
-                    if (title.contains(q) || note.contains(q) || cat.contains(q) || dateNorm.contains(q)) match = true;
-                }
-                if (!match) continue;
-
-                // build Transaction model for adapter
-                int icon = R.drawable.ic_transaction;
-                if (CategoryHelper.KEY_FOOD.equals(te.category)) icon = R.drawable.ic_food;
-                if (CategoryHelper.KEY_TRANSPORT.equals(te.category)) icon = R.drawable.ic_transport;
-                if (CategoryHelper.KEY_SHOPPING.equals(te.category)) icon = R.drawable.ic_shopping;
-                if (CategoryHelper.KEY_ENTERTAINMENT.equals(te.category)) icon = R.drawable.ic_entertainment;
-
-                // Use title if available, otherwise use localized category or note
-                String title;
-                if (te.title != null && !te.title.isEmpty()) {
-                    title = te.title;
-                } else if (te.category != null && !te.category.isEmpty()) {
-                    title = CategoryHelper.getLocalizedCategory(getContext(), te.category);
-                } else if (te.note != null && !te.note.isEmpty()) {
-                    title = te.note;
-                } else {
-                    title = getString(R.string.transaction_title_default);
+    // Patch the loaded list with what changed instead of reloading it; refresh the month sums only
+    // when the change touches the current month.
+    private void onTransactionsChanged(TransactionChange change) {
+        View view = getView();
+        if (view == null || adapter == null) return;
+        String userId = currentUserId();
+        if (!change.affectsUser(userId)) return;
+        if (change.full) {
+            applyFilters();
+            refreshSums(view);
+            return;
+        }
+
+        for (long id : change.deletedIds) adapter.removeById(id);
+
+        if (!change.inserted.isEmpty()) {
+            // whether a new row matches the search text is decided by the FTS index; reload instead
+            String q = edtSearch == null ? "" : edtSearch.getText().toString().trim();
+            if (!q.isEmpty()) {
+                applyFilters();
+            } else {
+                String typeFilter = currentTypeFilter();
+                Comparator<Transaction> order = sortOrder(currentSortMode);
+                for (TransactionEntity te : change.inserted) {
+                    if (!userId.equals(te.userId)) continue;
+                    if (typeFilter != null && !typeFilter.equalsIgnoreCase(te.type)) continue;
+                    Transaction t = formatter.format(TransactionRow.from(te));
+                    // rows past the loaded window arrive with a later page
+                    if (hasMorePages && adapter.positionFor(t, order) == adapter.getLoadedCount()) continue;
+                    adapter.insertSorted(t, order);
                 }
-                Transaction t = new Transaction(title, dateStr, te.amount, icon);
-                t.extraLong = te.timestamp;
-                t.category = te.category;
-                t.note = te.note;
-                pairs.add(new Pair<>(t, te.timestamp));
             }
         }
-        // Sort based on currentSortMode
-        switch (currentSortMode) {
-            case 0: // Newest (date desc)
-                pairs.sort((p1, p2) -> Long.compare(p2.second, p1.second));
-                break;
-            case 1: // Oldest (date asc)
-                pairs.sort(Comparator.comparingLong(p -> p.second));
-                break;
-            case 2: // Amount desc (high to low)
-                pairs.sort((p1, p2) -> Double.compare(Math.abs(p2.first.amount), Math.abs(p1.first.amount)));
-                break;
-            case 3: // Amount asc (low to high)
-                pairs.sort(Comparator.comparingDouble(p -> Math.abs(p.first.amount)));
-                break;
+
+        TextView empty = view.findViewById(R.id.emptyView);
+        if (empty != null) empty.setVisibility(adapter.getLoadedCount() == 0 ? View.VISIBLE : View.GONE);
+
+        // the month subtotals moved; a new month may have appeared ahead of the paging
+        if (isSectioned()) refreshMonths();
+
+        long[] month = currentMonthRange();
+        if (change.affects(userId, month[0], month[1])) refreshSums(view);
+    }
+
+    private boolean isSectioned() {
+        return currentSortMode == TransactionRepository.SORT_NEWEST || currentSortMode == TransactionRepository.SORT_OLDEST;
+    }
+
+    // Read the month subtotals, then start paging in the first month that has rows
+    private void loadMonths() {
+        loadingPage = true;
+        requests.deliver("page", repository.getMonthSummariesAsync(currentUserId()), list -> {
+            loadingPage = false;
+            setMonths(list);
+            pageMonth = months.isEmpty() ? null : months.get(0);
+            hasMorePages = pageMonth != null;
+            if (hasMorePages) {
+                loadNextPage();
+            } else {
+                restartPending = false;
+                onPageLoaded(new ArrayList<>(), true);
+            }
+        });
+    }
+
+    // Re-read the subtotals after a change; paging carries on from the same month
+    private void refreshMonths() {
+        requests.deliver("months", repository.getMonthSummariesAsync(currentUserId()), list -> {
+            if (months == null || !isSectioned()) return;
+            setMonths(list);
+        });
+    }
+
+    // Rollups come newest first; headers are rebuilt lazily for the new figures
+    private void setMonths(List<MonthSummary> summaries) {
+        List<String> ordered = new ArrayList<>(summaries.size());
+        monthTotals.clear();
+        for (MonthSummary s : summaries) {
+            ordered.add(s.month);
+            monthTotals.put(s.month, s);
+        }
+        if (currentSortMode == TransactionRepository.SORT_OLDEST) Collections.reverse(ordered);
+        months = ordered;
+        monthHeaders.clear();
+        final TransactionFormatter headers = formatter;
+        adapter.setSections(m -> monthHeaders.computeIfAbsent(m, k -> headers.formatHeader(k, monthTotals.get(k))));
+    }
+
+    // The month after this one in list order, or null; months are "yyyy-MM", so they compare as strings
+    private String monthAfter(String month) {
+        boolean newestFirst = currentSortMode != TransactionRepository.SORT_OLDEST;
+        for (String m : months) {
+            int cmp = m.compareTo(month);
+            if (newestFirst ? cmp < 0 : cmp > 0) return m;
+        }
+        return null;
+    }
+
+    // [from, to] in millis of a "yyyy-MM" month, local time
+    private static long[] monthRange(String month) {
+        YearMonth ym = YearMonth.parse(month);
+        ZoneId zone = ZoneId.systemDefault();
+        long from = ym.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        long to = ym.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant().toEpochMilli() - 1;
+        return new long[]{from, to};
+    }
+
+    // Same order as the keyset page queries for each sort mode
+    private static Comparator<Transaction> sortOrder(int sortMode) {
+        switch (sortMode) {
+            case TransactionRepository.SORT_OLDEST:
+                return (a, b) -> a.timestamp != b.timestamp ? Long.compare(a.timestamp, b.timestamp) : Long.compare(a.id, b.id);
+            case TransactionRepository.SORT_AMOUNT_DESC:
+                return (a, b) -> Math.abs(a.amount) != Math.abs(b.amount) ? Double.compare(Math.abs(b.amount), Math.abs(a.amount)) : Long.compare(b.id, a.id);
+            case TransactionRepository.SORT_AMOUNT_ASC:
+                return (a, b) -> Math.abs(a.amount) != Math.abs(b.amount) ? Double.compare(Math.abs(a.amount), Math.abs(b.amount)) : Long.compare(a.id, b.id);
+            case TransactionRepository.SORT_NEWEST:
             default:
-                break;
+                return (a, b) -> a.timestamp != b.timestamp ? Long.compare(b.timestamp, a.timestamp) : Long.compare(b.id, a.id);
         }
+    }
 
-        List<Transaction> out = new ArrayList<>();
-        for (Pair<Transaction, Long> p : pairs) out.add(p.first);
+    // A keystroke makes whatever is queued or running for the old text stale: drop it now and start
+    // the new search when typing pauses. Scroll paging waits too, so no page of the old text is appended.
+    private void onSearchTextChanged() {
+        requests.cancel("page");
+        loadingPage = true;
+        searchHandler.removeCallbacks(searchRunnable);
+        searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+    }
 
-        // update adapter and empty view
-        adapter.setItems(out);
-        TextView empty = view.findViewById(R.id.emptyView);
-        if (empty != null) empty.setVisibility(out.isEmpty() ? View.VISIBLE : View.GONE);
+    // Apply current search, chip-filter and sort: restart paging from the first page
+    private void applyFilters() {
+        searchHandler.removeCallbacks(searchRunnable);
+        pageCursor = null;
+        hasMorePages = true;
+        loadingPage = false;
+        restartPending = true;
+        months = null;
+        pageMonth = null;
+        if (adapter == null || repository == null || getView() == null) return;
+        if (isSectioned()) {
+            loadMonths();
+        } else {
+            requests.cancel("months");
+            adapter.setSections(null);
+            loadNextPage();
+        }
+    }
+
+    // Fetch the next page for the current filters and append it to the adapter
+    private void loadNextPage() {
+        if (adapter == null || repository == null || getView() == null) return;
+        if (loadingPage || !hasMorePages) return;
+        loadingPage = true;
+
+        final boolean firstPage = restartPending;
 
-        // scroll to top
-        RecyclerView rv2 = view.findViewById(R.id.rvTransactions);
-        if (rv2 != null && !out.isEmpty()) rv2.scrollToPosition(0);
+        String q = "";
+        if (edtSearch != null) q = edtSearch.getText().toString().trim();
+
+        // sectioned: read only inside the month being paged. A search matches few rows spread over
+        // many months, so it pages across all of them instead; its rows still get their headers.
+        final boolean windowed = months != null && q.isEmpty();
+        long fromTs = Long.MIN_VALUE, toTs = Long.MAX_VALUE;
+        if (windowed) {
+            try {
+                long[] range = monthRange(pageMonth);
+                fromTs = range[0];
+                toTs = range[1];
+            } catch (Exception ignored) {}
+        }
+
+        // chip filter
+        String typeFilter = currentTypeFilter();
+        String userId = currentUserId();
+
+        // search is answered by the full-text index on the repository thread, and the rows are turned
+        // into list items there too; only the adapter update runs on the main thread
+        final TransactionFormatter rows = formatter;
+        CompletableFuture<TransactionPage> query = repository.getPageAsync(userId, typeFilter, q, currentSortMode, fromTs, toTs, pageCursor, PAGE_SIZE);
+        CompletableFuture<List<Transaction>> built = query.thenApply(page -> rows.formatAll(page.items));
+        // cancelling what is delivered must also drop the query if it has not run yet
+        built.whenComplete((v, t) -> {
+            if (built.isCancelled()) query.cancel(false);
+        });
+
+        // a newer reload under the same key cancels this one, queued or not
+        requests.deliver("page", built, items -> {
+            TransactionPage page = query.join();
+            loadingPage = false;
+            restartPending = false;
+            pageCursor = page.cursor;
+            hasMorePages = page.hasMore;
+            if (windowed && !page.hasMore) {
+                // month done: go on with the next one from its start
+                pageMonth = monthAfter(pageMonth);
+                pageCursor = null;
+                hasMorePages = pageMonth != null;
+            }
+            onPageLoaded(items, firstPage);
+            // a filtered page may not fill the screen, and a month may have no matching rows;
+            // keep going until the screen is full or data runs out
+            if (hasMorePages && (items.isEmpty() || adapter.getLoadedCount() < PAGE_SIZE)) loadNextPage();
+        });
+    }
+
+    private void onPageLoaded(List<Transaction> out, boolean firstPage) {
+        View view = getView(); if (view == null) return;
+
+        if (firstPage) {
+            // scroll to top when the list was restarted, once the diff has been applied
+            RecyclerView rv2 = view.findViewById(R.id.rvTransactions);
+            adapter.setItems(out, () -> {
+                if (rv2 != null && !out.isEmpty()) rv2.scrollToPosition(0);
+            });
+        } else {
+            adapter.addItems(out);
+        }
+
+        TextView empty = view.findViewById(R.id.emptyView);
+        if (empty != null) empty.setVisibility(adapter.getLoadedCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
     // Update sort button text based on current sort mode
@@ -388,47 +614,13 @@ public class TransactionsFragment extends Fragment {
         }
     }
 
-    // Normalize text for search: remove diacritics, lower-case, collapse whitespace
-    private static String normalizeForSearch(String s) {
-        if (s == null) return "";
-        try {
-            String t = java.text.Normalizer.normalize(s, java.text.Normalizer.Form.NFD);
-            t = t.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-            t = t.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
-            return t;
-        } catch (Exception ex) {
-            return s.toLowerCase(Locale.ROOT).trim();
-        }
-    }
-
     // Called externally (e.g., MainActivity) when a new transaction is added.
     // Refresh the data from repository to ensure UI is up-to-date.
-    public void addTransaction(Transaction tx) {
-        // Refresh data from repository (which triggers repoListener -> applyFilters)
-        try {
-            String userId = "local";
-            try {
-                if (FirebaseAuth.getInstance().getCurrentUser() != null)
-                    userId = FirebaseAuth.getInstance().getCurrentUser().getUid();
-            } catch (Exception ignored) {}
-
-            final String finalUserId = userId;
-            repository.getByUser(userId, entities -> {
-                if (entities == null) entities = new ArrayList<>();
-                synchronized (allEntities) {
-                    allEntities.clear();
-                    allEntities.addAll(entities);
-                }
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        applyFilters();
-                        // also refresh sums
-                        View v = getView();
-                        if (v != null) refreshSums(v);
-                    });
-                }
-            });
-        } catch (Exception ignored) {}
+    public void onTransactionAdded() {
+        // Reload from the first page so the new row shows up in the right place
+        applyFilters();
+        View v = getView();
+        if (v != null) refreshSums(v);
     }
 
     /**
@@ -12,7 +12,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.button.MaterialButton;
 import com.google.firebase.auth.FirebaseAuth;
 
-import net.tiramisu.mdp.model.TransactionEntity;
+import net.tiramisu.mdp.repo.RequestScope;
 import net.tiramisu.mdp.repo.TransactionRepository;
 
 public class ViewDetailsActivity extends AppCompatActivity {
@@ -49,7 +49,7 @@ public class ViewDetailsActivity extends AppCompatActivity {
         double amount = getIntent().getDoubleExtra("EXTRA_AMOUNT", 0.0);
         String category = getIntent().getStringExtra("EXTRA_CATEGORY");
         String note = getIntent().getStringExtra("EXTRA_NOTE");
-        long timestamp = getIntent().getLongExtra("EXTRA_TIMESTAMP", 0L);
+        long id = getIntent().getLongExtra("EXTRA_ID", 0L);
 
         // Format amount using CurrencyUtils
         String amountStr = CurrencyUtils.formatCurrency(this, amount);
@@ -71,28 +71,43 @@ public class ViewDetailsActivity extends AppCompatActivity {
             tvDetailCategory.setText(getString(R.string.transaction_category_label, getString(R.string.transaction_category_default)));
         }
 
-        if (note != null && !note.isEmpty()) {
-            tvDetailNote.setText(getString(R.string.transaction_note_label, note));
-        } else {
-            tvDetailNote.setText(getString(R.string.transaction_note_label, getString(R.string.transaction_note_default)));
+        showNote(tvDetailNote, note);
+        // lists do not carry the note; read it from the row
+        if (note == null && id > 0) {
+            RequestScope.of(this).deliver("note", repository.getByIdAsync(id), te -> {
+                if (te != null) showNote(tvDetailNote, te.note);
+            });
         }
 
         // Setup delete button
         if (btnDelete != null) {
-            btnDelete.setOnClickListener(v -> showDeleteConfirmationDialog(timestamp, amount));
+            btnDelete.setOnClickListener(v -> showDeleteConfirmationDialog(id));
         }
     }
 
-    private void showDeleteConfirmationDialog(long timestamp, double amount) {
+    private void showNote(TextView tvDetailNote, String note) {
+        if (note != null && !note.isEmpty()) {
+            tvDetailNote.setText(getString(R.string.transaction_note_label, note));
+        } else {
+            tvDetailNote.setText(getString(R.string.transaction_note_label, getString(R.string.transaction_note_default)));
+        }
+    }
+
+    private void showDeleteConfirmationDialog(long id) {
         new AlertDialog.Builder(this)
             .setTitle(R.string.delete_transaction_title)
             .setMessage(R.string.delete_transaction_message)
-            .setPositiveButton(R.string.delete, (dialog, which) -> deleteTransaction(timestamp, amount))
+            .setPositiveButton(R.string.delete, (dialog, which) -> deleteTransaction(id))
             .setNegativeButton(R.string.cancel, null)
             .show();
     }
 
-    private void deleteTransaction(long timestamp, double amount) {
+    private void deleteTransaction(long id) {
+        if (id <= 0) {
+            Toast.makeText(this, R.string.delete_transaction_error, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
         String userId = "local";
         try {
             if (FirebaseAuth.getInstance().getCurrentUser() != null) {
@@ -100,25 +115,15 @@ public class ViewDetailsActivity extends AppCompatActivity {
             }
         } catch (Exception ignored) {}
 
-        final String finalUserId = userId;
-
-        // Find the transaction by userId, timestamp, and amount
-        repository.getByUserAndTimestampAndAmount(userId, timestamp, amount, transaction -> {
-            if (transaction == null) {
-                runOnUiThread(() -> {
-                    Toast.makeText(this, R.string.delete_transaction_error, Toast.LENGTH_SHORT).show();
-                });
+        // Delete by primary key and adjust balance by the stored amount; the callback runs on the main thread
+        repository.deleteTransaction(id, userId, removed -> {
+            if (!removed) {
+                Toast.makeText(this, R.string.delete_transaction_error, Toast.LENGTH_SHORT).show();
                 return;
             }
-
-            // Delete the transaction and adjust balance
-            repository.deleteTransaction(transaction.id, finalUserId, transaction.amount, () -> {
-                runOnUiThread(() -> {
-                    Toast.makeText(this, R.string.delete_transaction_success, Toast.LENGTH_SHORT).show();
-                    setResult(RESULT_OK); // Notify calling activity that data changed
-                    finish(); // Close the detail activity
-                });
-            });
+            Toast.makeText(this, R.string.delete_transaction_success, Toast.LENGTH_SHORT).show();
+            setResult(RESULT_OK); // Notify calling activity that data changed
+            finish(); // Close the detail activity
         });
     }
 }
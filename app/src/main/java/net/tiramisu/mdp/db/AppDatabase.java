@@ -2,24 +2,105 @@ package net.tiramisu.mdp.db;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import net.tiramisu.mdp.model.BalanceEntity;
+import net.tiramisu.mdp.model.MonthlyRollup;
 import net.tiramisu.mdp.model.TransactionEntity;
+import net.tiramisu.mdp.model.TransactionFts;
 
-@Database(entities = {TransactionEntity.class}, version = 2, exportSchema = false)
+@Database(entities = {TransactionEntity.class, MonthlyRollup.class, TransactionFts.class, BalanceEntity.class}, version = 7, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     private static final String DB_NAME = "mdp_app_db";
     private static volatile AppDatabase INSTANCE;
 
     public abstract TransactionDao transactionDao();
 
+    public abstract RollupDao rollupDao();
+
+    public abstract BalanceDao balanceDao();
+
+    // v3: composite indexes on (userId, timestamp); keep existing rows instead of wiping them
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_transactions_userId_timestamp` ON `transactions` (`userId`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_transactions_userId_timestamp_amount_category` ON `transactions` (`userId`, `timestamp`, `amount`, `category`)");
+        }
+    };
+
+    // v4: monthly_rollups table, filled from existing rows and kept current by triggers
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL(RollupSql.CREATE_TABLE);
+            RollupSql.createTriggers(db);
+            RollupSql.rebuild(db);
+        }
+    };
+
+    // v5: transactions_fts full-text index; same SQL and sync triggers Room generates for TransactionFts
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `transactions_fts` USING FTS4(`title` TEXT, `note` TEXT, `category` TEXT, "
+                    + "tokenize=unicode61 `remove_diacritics=2`, content=`transactions`)");
+            for (String op : new String[]{"UPDATE", "DELETE"}) {
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_transactions_fts_BEFORE_" + op + " BEFORE " + op
+                        + " ON `transactions` BEGIN DELETE FROM `transactions_fts` WHERE `docid`=OLD.`rowid`; END");
+            }
+            for (String op : new String[]{"UPDATE", "INSERT"}) {
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_transactions_fts_AFTER_" + op + " AFTER " + op
+                        + " ON `transactions` BEGIN INSERT INTO `transactions_fts`(`docid`, `title`, `note`, `category`) "
+                        + "VALUES (NEW.`rowid`, NEW.`title`, NEW.`note`, NEW.`category`); END");
+            }
+            // index the rows that already exist
+            db.execSQL("INSERT INTO `transactions_fts`(`transactions_fts`) VALUES('rebuild')");
+        }
+    };
+
+    // v6: balances table, the local source of truth for base balances (was SharedPreferences / Firestore reads)
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `balances` (`userId` TEXT NOT NULL, `balance` REAL NOT NULL, `pendingDelta` REAL NOT NULL, "
+                    + "`pendingSet` INTEGER NOT NULL, `version` INTEGER NOT NULL, `syncedAt` INTEGER NOT NULL, PRIMARY KEY(`userId`))");
+        }
+    };
+
+    // v7: absAmount column with an (userId, absAmount, id) index, so the amount-ordered pages walk an
+    // index instead of sorting all of a user's rows
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `transactions` ADD COLUMN `absAmount` REAL NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE `transactions` SET `absAmount` = ABS(`amount`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_transactions_userId_absAmount_id` ON `transactions` (`userId`, `absAmount`, `id`)");
+        }
+    };
+
+    // triggers are not part of Room's schema, so (re)create them whenever the database opens
+    private static final Callback TRIGGERS_CALLBACK = new Callback() {
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            RollupSql.createTriggers(db);
+        }
+    };
+
     public static AppDatabase getInstance(Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(), AppDatabase.class, DB_NAME)
+                            .addMigrations(MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7)
+                            .addCallback(TRIGGERS_CALLBACK)
+                            // WAL: readers do not block on the writer, so the repository can read in parallel
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
                             .fallbackToDestructiveMigration()
                             .build();
                 }
@@ -28,4 +109,3 @@ public abstract class AppDatabase extends RoomDatabase {
         return INSTANCE;
     }
 }
-
@@ -0,0 +1,80 @@
+package net.tiramisu.mdp.db;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import net.tiramisu.mdp.model.BalanceEntity;
+
+import java.util.List;
+
+// balances: local base balance per user plus what still has to reach the server.
+// "synced" is false for the signed-out "local" user, whose balance never leaves the device.
+@Dao
+public interface BalanceDao {
+    String GET_ROW = "SELECT * FROM balances WHERE userId = :userId";
+    @Query(GET_ROW)
+    BalanceEntity get(String userId);
+
+    // Emits null until the user has a row
+    String OBSERVE_BALANCE = "SELECT balance FROM balances WHERE userId = :userId";
+    @Query(OBSERVE_BALANCE)
+    LiveData<Double> observeBalance(String userId);
+
+    String GET_PENDING_USER_IDS = "SELECT userId FROM balances WHERE pendingSet = 1 OR pendingDelta != 0";
+    @Query(GET_PENDING_USER_IDS)
+    List<String> getPendingUserIds();
+
+    String ENSURE_ROW = "INSERT OR IGNORE INTO balances (userId, balance, pendingDelta, pendingSet, version, syncedAt) VALUES (:userId, 0, 0, 0, 0, 0)";
+    @Query(ENSURE_ROW)
+    void ensureRow(String userId);
+
+    String ADD_DELTA = "UPDATE balances SET balance = balance + :delta, " +
+            "pendingDelta = CASE WHEN :synced AND pendingSet = 0 THEN pendingDelta + :delta ELSE pendingDelta END, " +
+            "version = version + 1 WHERE userId = :userId";
+    @Query(ADD_DELTA)
+    void addDelta(String userId, double delta, boolean synced);
+
+    String SET_VALUE = "UPDATE balances SET balance = :balance, pendingSet = :synced, pendingDelta = 0, version = version + 1 WHERE userId = :userId";
+    @Query(SET_VALUE)
+    void setValue(String userId, double balance, boolean synced);
+
+    // Local change by delta (e.g. a deleted transaction); for synced users also queued as an increment
+    @Transaction
+    default void adjust(String userId, double delta, boolean synced) {
+        ensureRow(userId);
+        addDelta(userId, delta, synced);
+    }
+
+    // User-entered balance; for synced users queued to overwrite the server value
+    @Transaction
+    default void set(String userId, double balance, boolean synced) {
+        ensureRow(userId);
+        setValue(userId, balance, synced);
+    }
+
+    // The server accepted a set of the row as of version; clear it unless the user changed it again since
+    String MARK_SET_PUSHED = "UPDATE balances SET pendingSet = 0, pendingDelta = 0 WHERE userId = :userId AND version = :version";
+    @Query(MARK_SET_PUSHED)
+    void markSetPushed(String userId, long version);
+
+    // The server applied an increment of delta; deltas added meanwhile stay pending.
+    // Skipped while a set is pending: that write carries the absolute value anyway.
+    String MARK_DELTA_PUSHED = "UPDATE balances SET pendingDelta = CASE WHEN ABS(pendingDelta - :delta) < 1e-9 THEN 0 ELSE pendingDelta - :delta END " +
+            "WHERE userId = :userId AND pendingSet = 0";
+    @Query(MARK_DELTA_PUSHED)
+    void markDeltaPushed(String userId, double delta);
+
+    // Server value read while the row was at seenVersion; dropped if there were local changes since
+    String APPLY_PULLED = "UPDATE balances SET balance = :balance, syncedAt = :syncedAt " +
+            "WHERE userId = :userId AND version = :seenVersion AND pendingSet = 0 AND pendingDelta = 0";
+    @Query(APPLY_PULLED)
+    int applyPulled(String userId, double balance, long syncedAt, long seenVersion);
+
+    @Transaction
+    default int storePulled(String userId, double balance, long syncedAt, long seenVersion) {
+        ensureRow(userId);
+        return applyPulled(userId, balance, syncedAt, seenVersion);
+    }
+}
@@ -0,0 +1,66 @@
+package net.tiramisu.mdp.db;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import net.tiramisu.mdp.model.CategorySum;
+import net.tiramisu.mdp.model.MonthSummary;
+
+import java.util.List;
+
+// Whole-month aggregates served from monthly_rollups. Months are "yyyy-MM" strings (inclusive range).
+@Dao
+public interface RollupDao {
+    String GET_SUM_INCOME = "SELECT SUM(total) FROM monthly_rollups WHERE userId = :userId AND month >= :fromMonth AND month <= :toMonth AND direction = 1";
+    @Query(GET_SUM_INCOME)
+    Double getSumIncome(String userId, String fromMonth, String toMonth);
+
+    String GET_SUM_EXPENSE = "SELECT SUM(total) FROM monthly_rollups WHERE userId = :userId AND month >= :fromMonth AND month <= :toMonth AND direction = -1";
+    @Query(GET_SUM_EXPENSE)
+    Double getSumExpense(String userId, String fromMonth, String toMonth);
+
+    String GET_SUM_ALL = "SELECT SUM(total) FROM monthly_rollups WHERE userId = :userId AND month >= :fromMonth AND month <= :toMonth";
+    @Query(GET_SUM_ALL)
+    Double getSumAll(String userId, String fromMonth, String toMonth);
+
+    String GET_CATEGORY_SUMS = "SELECT NULLIF(category, '') as category, SUM(total) as total FROM monthly_rollups "
+            + "WHERE userId = :userId AND month >= :fromMonth AND month <= :toMonth GROUP BY category ORDER BY total DESC";
+    @Query(GET_CATEGORY_SUMS)
+    List<CategorySum> getCategorySums(String userId, String fromMonth, String toMonth);
+
+    // Months that have rows, newest first, with their totals (one grouped pass over the user's rollups)
+    String GET_MONTH_SUMMARIES = "SELECT month, " +
+            "TOTAL(CASE WHEN direction = 1 THEN total END) AS income, " +
+            "TOTAL(CASE WHEN direction = -1 THEN total END) AS expense " +
+            "FROM monthly_rollups WHERE userId = :userId GROUP BY month ORDER BY month DESC";
+    @Query(GET_MONTH_SUMMARIES)
+    List<MonthSummary> getMonthSummaries(String userId);
+
+    // Observable variants: Room's InvalidationTracker re-runs them when monthly_rollups changes
+    // (the rollup triggers write it on every transactions insert/update/delete).
+    String OBSERVE_MONTH_SUMMARY = "SELECT :month AS month, " +
+            "TOTAL(CASE WHEN direction = 1 THEN total END) AS income, " +
+            "TOTAL(CASE WHEN direction = -1 THEN total END) AS expense " +
+            "FROM monthly_rollups WHERE userId = :userId AND month = :month";
+    @Query(OBSERVE_MONTH_SUMMARY)
+    LiveData<MonthSummary> observeMonthSummary(String userId, String month);
+
+    String OBSERVE_CATEGORY_SUMS = GET_CATEGORY_SUMS;
+    @Query(OBSERVE_CATEGORY_SUMS)
+    LiveData<List<CategorySum>> observeCategorySums(String userId, String fromMonth, String toMonth);
+
+    @Query(RollupSql.CLEAR)
+    void clear();
+
+    @Query(RollupSql.REBUILD)
+    void insertFromTransactions();
+
+    // Recompute every rollup row from the raw transactions (after migrations or a timezone change)
+    @Transaction
+    default void rebuild() {
+        clear();
+        insertFromTransactions();
+    }
+}
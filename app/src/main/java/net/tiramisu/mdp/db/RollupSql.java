@@ -0,0 +1,65 @@
+package net.tiramisu.mdp.db;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * SQL that keeps monthly_rollups in step with transactions. The triggers run inside the
+ * same SQLite transaction as the insert/update/delete that fires them, so the rollup can
+ * never be observed out of sync with the raw rows.
+ */
+public final class RollupSql {
+    private RollupSql() {}
+
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS `monthly_rollups` (`userId` TEXT NOT NULL, `month` TEXT NOT NULL, "
+            + "`category` TEXT NOT NULL, `direction` INTEGER NOT NULL, `total` REAL NOT NULL, `count` INTEGER NOT NULL, "
+            + "PRIMARY KEY(`userId`, `month`, `category`, `direction`))";
+
+    // month bucket in device local time; same format as java.time.YearMonth.toString()
+    private static final String MONTH_OF_TS = "strftime('%Y-%m', timestamp / 1000, 'unixepoch', 'localtime')";
+    private static final String DIRECTION_OF_AMOUNT = "CASE WHEN amount > 0 THEN 1 WHEN amount < 0 THEN -1 ELSE 0 END";
+
+    public static final String CLEAR = "DELETE FROM monthly_rollups";
+
+    public static final String REBUILD = "INSERT INTO monthly_rollups (userId, month, category, direction, total, count) "
+            + "SELECT userId, " + MONTH_OF_TS + ", COALESCE(category, ''), " + DIRECTION_OF_AMOUNT + ", SUM(amount), COUNT(*) "
+            + "FROM transactions GROUP BY 1, 2, 3, 4";
+
+    private static String month(String row) {
+        return "strftime('%Y-%m', " + row + ".timestamp / 1000, 'unixepoch', 'localtime')";
+    }
+
+    private static String direction(String row) {
+        return "(CASE WHEN " + row + ".amount > 0 THEN 1 WHEN " + row + ".amount < 0 THEN -1 ELSE 0 END)";
+    }
+
+    private static String match(String row) {
+        return "userId = " + row + ".userId AND month = " + month(row) + " AND category = COALESCE(" + row + ".category, '')"
+                + " AND direction = " + direction(row);
+    }
+
+    private static String add(String row) {
+        return "INSERT OR IGNORE INTO monthly_rollups (userId, month, category, direction, total, count) VALUES ("
+                + row + ".userId, " + month(row) + ", COALESCE(" + row + ".category, ''), " + direction(row) + ", 0, 0); "
+                + "UPDATE monthly_rollups SET total = total + " + row + ".amount, count = count + 1 WHERE " + match(row) + "; ";
+    }
+
+    private static String remove(String row) {
+        return "UPDATE monthly_rollups SET total = total - " + row + ".amount, count = count - 1 WHERE " + match(row) + "; "
+                + "DELETE FROM monthly_rollups WHERE " + match(row) + " AND count <= 0; ";
+    }
+
+    // Idempotent; safe to run on every open
+    static void createTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS rollup_after_insert AFTER INSERT ON transactions BEGIN "
+                + add("NEW") + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS rollup_after_delete AFTER DELETE ON transactions BEGIN "
+                + remove("OLD") + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS rollup_after_update AFTER UPDATE OF userId, amount, category, timestamp ON transactions BEGIN "
+                + remove("OLD") + add("NEW") + "END");
+    }
+
+    static void rebuild(SupportSQLiteDatabase db) {
+        db.execSQL(CLEAR);
+        db.execSQL(REBUILD);
+    }
+}
@@ -1,51 +1,169 @@
 package net.tiramisu.mdp.db;
 
+import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
 
 import net.tiramisu.mdp.model.CategorySum;
+import net.tiramisu.mdp.model.DeleteSummary;
 import net.tiramisu.mdp.model.TransactionEntity;
+import net.tiramisu.mdp.model.TransactionRow;
 
 import java.util.List;
 
+// Query strings are constants so TransactionDaoQueryPlanTest EXPLAINs the SQL Room actually runs
+// (same for RollupDao and BalanceDao).
 @Dao
 public interface TransactionDao {
+    // Columns of a list row (TransactionRow); everything except note and userId
+    String ROW_COLUMNS = "id, title, category, amount, type, timestamp";
+    int DELETE_CHUNK = 500;
+
     @Insert
     long insert(TransactionEntity t);
 
-    @Query("SELECT * FROM transactions WHERE userId = :userId ORDER BY timestamp DESC")
-    List<TransactionEntity> getByUser(String userId);
+    // Bulk insert: Room runs the whole list in a single transaction (one commit/fsync)
+    @Insert
+    List<Long> insertAll(List<TransactionEntity> list);
+
+    // Full rows strictly after (beforeTs, beforeId) in newest-first order; bulk readers (export) page
+    // through a user's history with this instead of loading it in one query
+    String GET_BY_USER_CHUNK = "SELECT * FROM transactions WHERE userId = :userId AND timestamp <= :beforeTs AND (timestamp < :beforeTs OR id < :beforeId) " +
+            "ORDER BY timestamp DESC, id DESC LIMIT :limit";
+    @Query(GET_BY_USER_CHUNK)
+    List<TransactionEntity> getByUserChunk(String userId, long beforeTs, long beforeId, int limit);
+
+    // Newest rows for a user, limited in SQL rather than slicing the whole history
+    String GET_NEWEST = "SELECT " + ROW_COLUMNS + " FROM transactions WHERE userId = :userId ORDER BY timestamp DESC, id DESC LIMIT :limit";
+    @Query(GET_NEWEST)
+    List<TransactionRow> getNewest(String userId, int limit);
+
+    // Same rows as getNewest, re-queried by Room whenever the transactions table changes
+    String OBSERVE_NEWEST = GET_NEWEST;
+    @Query(OBSERVE_NEWEST)
+    LiveData<List<TransactionRow>> observeNewest(String userId, int limit);
+
+    // Keyset pages: next rows strictly after the cursor row in the given order.
+    // type is optional ("income"/"expense"); pass null for all types. The date orders also take a
+    // [fromTs, toTs] window (one month of a sectioned list; Long.MIN_VALUE/MAX_VALUE for all rows),
+    // which narrows the same (userId, timestamp) index range the cursor walks. The amount orders
+    // walk (userId, absAmount, id), so no order needs a sort of the user's rows.
+    String GET_PAGE_NEWEST_FIRST = "SELECT " + ROW_COLUMNS + " FROM transactions WHERE userId = :userId AND (:type IS NULL OR type = :type COLLATE NOCASE) " +
+            "AND timestamp >= :fromTs AND timestamp <= :toTs " +
+            "AND timestamp <= :ts AND (timestamp < :ts OR id < :id) ORDER BY timestamp DESC, id DESC LIMIT :limit";
+    @Query(GET_PAGE_NEWEST_FIRST)
+    List<TransactionRow> getPageNewestFirst(String userId, String type, long fromTs, long toTs, long ts, long id, int limit);
+
+    String GET_PAGE_OLDEST_FIRST = "SELECT " + ROW_COLUMNS + " FROM transactions WHERE userId = :userId AND (:type IS NULL OR type = :type COLLATE NOCASE) " +
+            "AND timestamp >= :fromTs AND timestamp <= :toTs " +
+            "AND timestamp >= :ts AND (timestamp > :ts OR id > :id) ORDER BY timestamp ASC, id ASC LIMIT :limit";
+    @Query(GET_PAGE_OLDEST_FIRST)
+    List<TransactionRow> getPageOldestFirst(String userId, String type, long fromTs, long toTs, long ts, long id, int limit);
+
+    String GET_PAGE_LARGEST_FIRST = "SELECT " + ROW_COLUMNS + " FROM transactions WHERE userId = :userId AND (:type IS NULL OR type = :type COLLATE NOCASE) " +
+            "AND absAmount <= :abs AND (absAmount < :abs OR id < :id) ORDER BY absAmount DESC, id DESC LIMIT :limit";
+    @Query(GET_PAGE_LARGEST_FIRST)
+    List<TransactionRow> getPageLargestFirst(String userId, String type, double abs, long id, int limit);
+
+    String GET_PAGE_SMALLEST_FIRST = "SELECT " + ROW_COLUMNS + " FROM transactions WHERE userId = :userId AND (:type IS NULL OR type = :type COLLATE NOCASE) " +
+            "AND absAmount >= :abs AND (absAmount > :abs OR id > :id) ORDER BY absAmount ASC, id ASC LIMIT :limit";
+    @Query(GET_PAGE_SMALLEST_FIRST)
+    List<TransactionRow> getPageSmallestFirst(String userId, String type, double abs, long id, int limit);
+
+    // Same keyset pages restricted to rows whose title/note/category match an FTS4 query
+    // (e.g. "an* tr*"); the subquery returns the matching ids from transactions_fts. SQLite builds
+    // that id list once per page and walks the same ordered index as the unfiltered pages, so the
+    // match set is never sorted.
+    String SEARCH_PAGE_NEWEST_FIRST = "SELECT " + ROW_COLUMNS + " FROM transactions WHERE userId = :userId AND (:type IS NULL OR type = :type COLLATE NOCASE) " +
+            "AND id IN (SELECT rowid FROM transactions_fts WHERE transactions_fts MATCH :match) " +
+            "AND timestamp >= :fromTs AND timestamp <= :toTs " +
+            "AND timestamp <= :ts AND (timestamp < :ts OR id < :id) ORDER BY timestamp DESC, id DESC LIMIT :limit";
+    @Query(SEARCH_PAGE_NEWEST_FIRST)
+    List<TransactionRow> searchPageNewestFirst(String userId, String type, String match, long fromTs, long toTs, long ts, long id, int limit);
+
+    String SEARCH_PAGE_OLDEST_FIRST = "SELECT " + ROW_COLUMNS + " FROM transactions WHERE userId = :userId AND (:type IS NULL OR type = :type COLLATE NOCASE) " +
+            "AND id IN (SELECT rowid FROM transactions_fts WHERE transactions_fts MATCH :match) " +
+            "AND timestamp >= :fromTs AND timestamp <= :toTs " +
+            "AND timestamp >= :ts AND (timestamp > :ts OR id > :id) ORDER BY timestamp ASC, id ASC LIMIT :limit";
+    @Query(SEARCH_PAGE_OLDEST_FIRST)
+    List<TransactionRow> searchPageOldestFirst(String userId, String type, String match, long fromTs, long toTs, long ts, long id, int limit);
+
+    String SEARCH_PAGE_LARGEST_FIRST = "SELECT " + ROW_COLUMNS + " FROM transactions WHERE userId = :userId AND (:type IS NULL OR type = :type COLLATE NOCASE) " +
+            "AND id IN (SELECT rowid FROM transactions_fts WHERE transactions_fts MATCH :match) " +
+            "AND absAmount <= :abs AND (absAmount < :abs OR id < :id) ORDER BY absAmount DESC, id DESC LIMIT :limit";
+    @Query(SEARCH_PAGE_LARGEST_FIRST)
+    List<TransactionRow> searchPageLargestFirst(String userId, String type, String match, double abs, long id, int limit);
+
+    String SEARCH_PAGE_SMALLEST_FIRST = "SELECT " + ROW_COLUMNS + " FROM transactions WHERE userId = :userId AND (:type IS NULL OR type = :type COLLATE NOCASE) " +
+            "AND id IN (SELECT rowid FROM transactions_fts WHERE transactions_fts MATCH :match) " +
+            "AND absAmount >= :abs AND (absAmount > :abs OR id > :id) ORDER BY absAmount ASC, id ASC LIMIT :limit";
+    @Query(SEARCH_PAGE_SMALLEST_FIRST)
+    List<TransactionRow> searchPageSmallestFirst(String userId, String type, String match, double abs, long id, int limit);
 
     // Sum of positive amounts (income) in a time range
-    @Query("SELECT SUM(amount) FROM transactions WHERE userId = :userId AND timestamp >= :from AND timestamp <= :to AND amount > 0")
+    String GET_SUM_INCOME_IN_RANGE = "SELECT SUM(amount) FROM transactions WHERE userId = :userId AND timestamp >= :from AND timestamp <= :to AND amount > 0";
+    @Query(GET_SUM_INCOME_IN_RANGE)
     Double getSumIncomeInRange(String userId, long from, long to);
 
     // Sum of negative amounts (expense) in a time range
-    @Query("SELECT SUM(amount) FROM transactions WHERE userId = :userId AND timestamp >= :from AND timestamp <= :to AND amount < 0")
+    String GET_SUM_EXPENSE_IN_RANGE = "SELECT SUM(amount) FROM transactions WHERE userId = :userId AND timestamp >= :from AND timestamp <= :to AND amount < 0";
+    @Query(GET_SUM_EXPENSE_IN_RANGE)
     Double getSumExpenseInRange(String userId, long from, long to);
 
     // Sum of all amounts in a time range
-    @Query("SELECT SUM(amount) FROM transactions WHERE userId = :userId AND timestamp >= :from AND timestamp <= :to")
+    String GET_SUM_ALL_IN_RANGE = "SELECT SUM(amount) FROM transactions WHERE userId = :userId AND timestamp >= :from AND timestamp <= :to";
+    @Query(GET_SUM_ALL_IN_RANGE)
     Double getSumAllInRange(String userId, long from, long to);
 
-    // migration helper: move transactions from one userId to another
-    @Query("UPDATE transactions SET userId = :newUserId WHERE userId = :oldUserId")
-    void migrateUserId(String oldUserId, String newUserId);
+    // migration helper: one bounded step of moving transactions from one userId to another (the
+    // repository's migrateUserId repeats it); returns the number of rows moved (0 when done)
+    String MIGRATE_USER_ID_CHUNK = "UPDATE transactions SET userId = :newUserId WHERE id IN (SELECT id FROM transactions WHERE userId = :oldUserId LIMIT :limit)";
+    @Query(MIGRATE_USER_ID_CHUNK)
+    int migrateUserIdChunk(String oldUserId, String newUserId, int limit);
 
     // Sum grouped by category for a user in time range
-    @Query("SELECT category as category, SUM(amount) as total FROM transactions WHERE userId = :userId AND timestamp >= :from AND timestamp <= :to GROUP BY category ORDER BY total DESC")
+    String GET_CATEGORY_SUMS_IN_RANGE = "SELECT category as category, SUM(amount) as total FROM transactions WHERE userId = :userId AND timestamp >= :from AND timestamp <= :to GROUP BY category ORDER BY total DESC";
+    @Query(GET_CATEGORY_SUMS_IN_RANGE)
     List<CategorySum> getCategorySumsInRange(String userId, long from, long to);
 
-    // Get earliest transaction timestamp for a user (or NULL if none)
-    @Query("SELECT MIN(timestamp) FROM transactions WHERE userId = :userId")
-    Long getMinTimestampForUser(String userId);
+    // Full row, including the note, for the detail screen
+    String GET_BY_ID = "SELECT * FROM transactions WHERE id = :id";
+    @Query(GET_BY_ID)
+    TransactionEntity getById(long id);
+
+    // Delete a transaction by ID; returns the number of rows removed (0 if it was already gone)
+    String DELETE_BY_ID = "DELETE FROM transactions WHERE id = :transactionId";
+    @Query(DELETE_BY_ID)
+    int deleteById(long transactionId);
+
+    // Which of ids exist and belong to userId
+    String GET_OWNED_IDS = "SELECT id FROM transactions WHERE userId = :userId AND id IN (:ids)";
+    @Query(GET_OWNED_IDS)
+    List<Long> getOwnedIds(String userId, List<Long> ids);
+
+    String SUMMARIZE_BY_IDS = "SELECT COUNT(*) AS count, TOTAL(amount) AS total, MIN(timestamp) AS minTimestamp, MAX(timestamp) AS maxTimestamp " +
+            "FROM transactions WHERE userId = :userId AND id IN (:ids)";
+    @Query(SUMMARIZE_BY_IDS)
+    DeleteSummary summarizeByIds(String userId, List<Long> ids);
 
-    // Delete a transaction by ID
-    @Query("DELETE FROM transactions WHERE id = :transactionId")
-    void deleteById(long transactionId);
+    String DELETE_BY_IDS = "DELETE FROM transactions WHERE userId = :userId AND id IN (:ids)";
+    @Query(DELETE_BY_IDS)
+    int deleteByIds(String userId, List<Long> ids);
 
-    // Get a transaction by userId, timestamp, and amount (to find transaction for deletion)
-    @Query("SELECT * FROM transactions WHERE userId = :userId AND timestamp = :timestamp AND amount = :amount LIMIT 1")
-    TransactionEntity getByUserAndTimestampAndAmount(String userId, long timestamp, double amount);
+    // Bulk delete in one transaction; returns what was actually removed, ids included (ids of other
+    // users or rows already gone do not count). ids are bound in chunks to stay under SQLite's host-parameter limit.
+    @Transaction
+    default DeleteSummary deleteByIdsReturningSummary(String userId, List<Long> ids) {
+        DeleteSummary removed = new DeleteSummary();
+        for (int i = 0; i < ids.size(); i += DELETE_CHUNK) {
+            List<Long> owned = getOwnedIds(userId, ids.subList(i, Math.min(ids.size(), i + DELETE_CHUNK)));
+            if (owned.isEmpty()) continue;
+            removed.add(summarizeByIds(userId, owned));
+            deleteByIds(userId, owned);
+            removed.ids.addAll(owned);
+        }
+        return removed;
+    }
 }
@@ -0,0 +1,29 @@
+package net.tiramisu.mdp.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+// Base balance per user; the local source of truth that screens read. For signed-in users,
+// BalanceReconciler pushes local changes to Firestore and pulls the server value back.
+@Entity(tableName = "balances")
+public class BalanceEntity {
+    @PrimaryKey
+    @NonNull
+    public String userId;
+
+    public double balance;      // value shown, including changes not yet on the server
+    public double pendingDelta; // increments not yet pushed (ignored while pendingSet)
+    public boolean pendingSet;  // balance was set outright and must be written to the server as is
+    public long version;        // bumped on every local change; a push or pull only lands if it is unchanged
+    public long syncedAt;       // epoch millis of the last server read, 0 = never
+
+    public BalanceEntity(@NonNull String userId, double balance, double pendingDelta, boolean pendingSet, long version, long syncedAt) {
+        this.userId = userId;
+        this.balance = balance;
+        this.pendingDelta = pendingDelta;
+        this.pendingSet = pendingSet;
+        this.version = version;
+        this.syncedAt = syncedAt;
+    }
+}
@@ -0,0 +1,37 @@
+package net.tiramisu.mdp.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Ignore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// What a bulk delete removed: how many rows, their ids, their summed amount and their timestamp
+// range (null bounds when nothing matched).
+public class DeleteSummary {
+    @ColumnInfo(name = "count")
+    public int count;
+
+    @ColumnInfo(name = "total")
+    public double total;
+
+    @ColumnInfo(name = "minTimestamp")
+    public Long minTimestamp;
+
+    @ColumnInfo(name = "maxTimestamp")
+    public Long maxTimestamp;
+
+    // filled by the delete itself, not by the summary query
+    @Ignore
+    public final List<Long> ids = new ArrayList<>();
+
+    // Fold in the summary of another chunk of the same delete
+    public void add(DeleteSummary other) {
+        if (other == null || other.count == 0) return;
+        count += other.count;
+        total += other.total;
+        if (other.minTimestamp != null && (minTimestamp == null || other.minTimestamp < minTimestamp)) minTimestamp = other.minTimestamp;
+        if (other.maxTimestamp != null && (maxTimestamp == null || other.maxTimestamp > maxTimestamp)) maxTimestamp = other.maxTimestamp;
+        ids.addAll(other.ids);
+    }
+}
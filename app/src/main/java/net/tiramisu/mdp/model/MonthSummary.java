@@ -0,0 +1,16 @@
+package net.tiramisu.mdp.model;
+
+import androidx.room.ColumnInfo;
+
+// Income and expense totals of one local-time month ("yyyy-MM") that has transactions.
+// Expense is a negative sum, like getSumExpenseInRange.
+public class MonthSummary {
+    @ColumnInfo(name = "month")
+    public String month;
+
+    @ColumnInfo(name = "income")
+    public double income;
+
+    @ColumnInfo(name = "expense")
+    public double expense;
+}
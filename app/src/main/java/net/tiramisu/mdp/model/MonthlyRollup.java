@@ -0,0 +1,31 @@
+package net.tiramisu.mdp.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+// Running totals per (user, month, category, direction), maintained by SQLite triggers on
+// the transactions table (see RollupSql) so whole-month aggregates do not scan raw rows.
+@Entity(tableName = "monthly_rollups", primaryKeys = {"userId", "month", "category", "direction"})
+public class MonthlyRollup {
+    @NonNull
+    public String userId;
+
+    @NonNull
+    public String month; // "yyyy-MM" in device local time
+
+    @NonNull
+    public String category; // "" when the transaction has no category
+
+    public int direction; // 1 = income (amount > 0), -1 = expense (amount < 0), 0 = zero amount
+    public double total;
+    public int count;
+
+    public MonthlyRollup(@NonNull String userId, @NonNull String month, @NonNull String category, int direction, double total, int count) {
+        this.userId = userId;
+        this.month = month;
+        this.category = category;
+        this.direction = direction;
+        this.total = total;
+        this.count = count;
+    }
+}
@@ -1,10 +1,21 @@
 package net.tiramisu.mdp.model;
 
 import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "transactions")
+// Every query filters on userId first and then on a timestamp range or order.
+// (userId, timestamp) serves the ordered list queries; the wider index covers the
+// SUM/GROUP BY aggregates so they never have to touch the table rows. (userId, absAmount, id)
+// serves the amount-ordered pages; Room indexes columns only, so |amount| is stored.
+@Entity(tableName = "transactions",
+        indices = {
+                @Index(value = {"userId", "timestamp"}),
+                @Index(value = {"userId", "timestamp", "amount", "category"}),
+                @Index(value = {"userId", "absAmount", "id"})
+        })
 public class TransactionEntity {
     @PrimaryKey(autoGenerate = true)
     public long id;
@@ -14,6 +25,8 @@ public class TransactionEntity {
 
     public String type; // "expense" or "income"
     public double amount;
+    @ColumnInfo(defaultValue = "0")
+    public double absAmount; // Math.abs(amount), set with it
     public String note;
     public String category;
     public String title; // custom title for the transaction
@@ -23,10 +36,10 @@ public class TransactionEntity {
         this.userId = userId;
         this.type = type;
         this.amount = amount;
+        this.absAmount = Math.abs(amount);
         this.note = note;
         this.category = category;
         this.title = title;
         this.timestamp = timestamp;
     }
 }
-
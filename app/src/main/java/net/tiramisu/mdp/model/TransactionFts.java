@@ -0,0 +1,16 @@
+package net.tiramisu.mdp.model;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+// Full-text index over the searchable text of transactions. External-content table: Room
+// creates triggers that keep it in sync with the transactions table, and its rowid is the
+// transaction id. unicode61 with remove_diacritics folds Vietnamese accents ("ăn" matches "an").
+@Fts4(contentEntity = TransactionEntity.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61, tokenizerArgs = {"remove_diacritics=2"})
+@Entity(tableName = "transactions_fts")
+public class TransactionFts {
+    public String title;
+    public String note;
+    public String category;
+}
@@ -0,0 +1,23 @@
+package net.tiramisu.mdp.model;
+
+// The columns a list row needs. Lists select this instead of TransactionEntity so the
+// (possibly long) note is not read for every row; ViewDetailsActivity loads it by id.
+public class TransactionRow {
+    public long id;
+    public String title;
+    public String category;
+    public double amount;
+    public String type;
+    public long timestamp;
+
+    public static TransactionRow from(TransactionEntity e) {
+        TransactionRow r = new TransactionRow();
+        r.id = e.id;
+        r.title = e.title;
+        r.category = e.category;
+        r.amount = e.amount;
+        r.type = e.type;
+        r.timestamp = e.timestamp;
+        return r;
+    }
+}
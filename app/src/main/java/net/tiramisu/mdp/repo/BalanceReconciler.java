@@ -0,0 +1,70 @@
+package net.tiramisu.mdp.repo;
+
+import net.tiramisu.mdp.db.BalanceDao;
+import net.tiramisu.mdp.model.BalanceEntity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+// Brings a user's balances row and the server into agreement, in the background.
+// Push first: a pending set is written as is, pending deltas go up as atomic increments.
+// Then pull: if something was pushed or the last read is older than pullIntervalMs, the server
+// value replaces the local one, unless the row changed locally while the read was in flight
+// (its version moved), in which case the next sync pushes that change first.
+// Syncs of one user go through a SingleFlight: one runs at a time, and requests made meanwhile fold
+// into a single follow-up run. A failed step leaves the row pending and the sync ends; the next
+// request retries.
+class BalanceReconciler {
+    private final BalanceDao dao;
+    private final RemoteBalanceSource remote;
+    private final Executor db;
+    // how long a pulled value is reused before the next sync reads the server again (row.syncedAt)
+    private final long pullIntervalMs;
+    private final LongSupplier clock;
+    private final SingleFlight<Void> syncs = new SingleFlight<>();
+
+    // db runs the DAO calls (off the main thread); remote callbacks may arrive on any thread
+    BalanceReconciler(BalanceDao dao, RemoteBalanceSource remote, Executor db, long pullIntervalMs) {
+        this(dao, remote, db, pullIntervalMs, System::currentTimeMillis);
+    }
+
+    // clock: wall time in millis, as stored in syncedAt
+    BalanceReconciler(BalanceDao dao, RemoteBalanceSource remote, Executor db, long pullIntervalMs, LongSupplier clock) {
+        this.dao = dao;
+        this.remote = remote;
+        this.db = db;
+        this.pullIntervalMs = pullIntervalMs;
+        this.clock = clock;
+    }
+
+    // Completes when the run that covers this request is over (successful or not)
+    CompletableFuture<Void> sync(final String uid) {
+        return syncs.run(uid, () -> step(uid, false).handle((v, t) -> null));
+    }
+
+    private CompletableFuture<Void> step(final String uid, final boolean pushed) {
+        return CompletableFuture.supplyAsync(() -> dao.get(uid), db).thenCompose(row -> {
+            if (row != null && row.pendingSet) {
+                final long version = row.version;
+                return remote.set(uid, row.balance)
+                        .thenRunAsync(() -> dao.markSetPushed(uid, version), db)
+                        .thenCompose(v -> step(uid, true));
+            }
+            if (row != null && row.pendingDelta != 0) {
+                final double delta = row.pendingDelta;
+                return remote.increment(uid, delta)
+                        .thenRunAsync(() -> dao.markDeltaPushed(uid, delta), db)
+                        .thenCompose(v -> step(uid, true));
+            }
+            if (!pushed && !isStale(row)) return CompletableFuture.completedFuture(null);
+            final long seenVersion = row == null ? 0 : row.version;
+            return remote.fetch(uid).thenAcceptAsync(balance ->
+                    dao.storePulled(uid, balance, clock.getAsLong(), seenVersion), db);
+        });
+    }
+
+    private boolean isStale(BalanceEntity row) {
+        return row == null || clock.getAsLong() - row.syncedAt >= pullIntervalMs;
+    }
+}
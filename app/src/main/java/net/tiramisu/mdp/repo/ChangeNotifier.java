@@ -0,0 +1,74 @@
+package net.tiramisu.mdp.repo;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Collapses bursts of change requests into one call per listener. The first request in a quiet
+// period schedules a flush WINDOW_MS later on the main thread; requests arriving before the flush
+// are merged into the same TransactionChange. Listeners always run on the main thread.
+public class ChangeNotifier {
+    static final long WINDOW_MS = 100;
+
+    private final CopyOnWriteArrayList<TransactionChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Object lock = new Object();
+    private TransactionChange pending;
+
+    // counters for toString(): change requests from writes and notifyChange(), coalesced
+    // notification rounds actually run, and listener invocations across all rounds
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+
+    private final Runnable flush = this::flush;
+
+    public void register(TransactionChangeListener listener) {
+        if (listener != null) listeners.addIfAbsent(listener);
+    }
+
+    public void unregister(TransactionChangeListener listener) {
+        if (listener != null) listeners.remove(listener);
+    }
+
+    // Safe to call from any thread
+    public void requestNotify(TransactionChange change) {
+        requested.incrementAndGet();
+        synchronized (lock) {
+            pending = pending == null ? change : pending.merge(change);
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            mainHandler.postDelayed(flush, WINDOW_MS);
+        }
+    }
+
+    private void flush() {
+        // clear first so a write during delivery schedules a new flush instead of being lost
+        scheduled.set(false);
+        TransactionChange change;
+        synchronized (lock) {
+            change = pending;
+            pending = null;
+        }
+        if (change == null) return;
+        flushes.incrementAndGet();
+        for (TransactionChangeListener l : listeners) {
+            try {
+                l.onTransactionsChanged(change);
+                delivered.incrementAndGet();
+            } catch (Exception ex) {
+                Log.d("TRRepo", "change listener failed: " + ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "requested=" + requested.get() + " flushes=" + flushes.get() + " delivered=" + delivered.get();
+    }
+}
@@ -0,0 +1,59 @@
+package net.tiramisu.mdp.repo;
+
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+// RemoteBalanceSource backed by the Firestore users/{uid} document
+public class FirestoreBalanceSource implements RemoteBalanceSource {
+    private DocumentReference doc(String uid) {
+        return FirebaseFirestore.getInstance().collection("users").document(uid);
+    }
+
+    @Override
+    public CompletableFuture<Double> fetch(String uid) {
+        final CompletableFuture<Double> future = new CompletableFuture<>();
+        doc(uid).get().addOnSuccessListener(doc -> {
+            if (doc == null || !doc.exists()) {
+                future.complete(0.0);
+                return;
+            }
+            Object val = doc.get("balance");
+            double parsed = 0.0;
+            try {
+                if (val instanceof Number) parsed = ((Number) val).doubleValue();
+                else {
+                    String s = val == null ? "" : val.toString();
+                    s = s.replaceAll("[^0-9.-]", "");
+                    if (!s.isEmpty()) parsed = Double.parseDouble(s);
+                }
+            } catch (Exception ignored) {}
+            future.complete(parsed);
+        }).addOnFailureListener(future::completeExceptionally);
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> set(String uid, double balance) {
+        return write(uid, balance);
+    }
+
+    // One write, applied by the server: concurrent increments from this or other devices all land.
+    // merge() creates the document (and the field) if the user has none yet.
+    @Override
+    public CompletableFuture<Void> increment(String uid, double delta) {
+        return write(uid, FieldValue.increment(delta));
+    }
+
+    private CompletableFuture<Void> write(String uid, Object balance) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        doc(uid).set(Collections.singletonMap("balance", balance), SetOptions.merge())
+                .addOnSuccessListener(aVoid -> future.complete(null))
+                .addOnFailureListener(future::completeExceptionally);
+        return future;
+    }
+}
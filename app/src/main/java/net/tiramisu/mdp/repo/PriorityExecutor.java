@@ -0,0 +1,53 @@
+package net.tiramisu.mdp.repo;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fixed-size pool whose queue is ordered by lane, then by submission order within a lane.
+// Queued interactive work (what a visible screen is waiting on) always starts before queued
+// background work. A running task is never preempted, so background jobs are split into short
+// chunks that re-submit themselves and interactive work gets a turn at every chunk boundary.
+class PriorityExecutor extends ThreadPoolExecutor {
+    enum Lane {INTERACTIVE, BACKGROUND}
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    PriorityExecutor(int threads) {
+        super(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>());
+        allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        execute(Lane.INTERACTIVE, command);
+    }
+
+    void execute(Lane lane, Runnable command) {
+        super.execute(new Task(lane, sequence.getAndIncrement(), command));
+    }
+
+    private static final class Task implements Runnable, Comparable<Task> {
+        final Lane lane;
+        final long seq;
+        final Runnable command;
+
+        Task(Lane lane, long seq, Runnable command) {
+            this.lane = lane;
+            this.seq = seq;
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            command.run();
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            if (lane != o.lane) return lane.compareTo(o.lane);
+            return Long.compare(seq, o.seq);
+        }
+    }
+}
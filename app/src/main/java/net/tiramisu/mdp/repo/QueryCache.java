@@ -0,0 +1,97 @@
+package net.tiramisu.mdp.repo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+// Bounded LRU cache of aggregate query results keyed by (kind, userId, from, to).
+// Writes evict only the entries whose range contains a written timestamp (or, for user-wide kinds
+// such as the month list, every entry of that user). Cached values are shared between
+// callers and must be treated as read-only.
+public class QueryCache {
+    private static final int MAX_ENTRIES = 64;
+
+    private final LinkedHashMap<Key, Object> entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+            if (size() <= MAX_ENTRIES) return false;
+            evictions++;
+            return true;
+        }
+    };
+    // bumped on every invalidation; a load that started before a write must not store its result
+    private long version;
+    private long hits, misses, evictions;
+
+    public synchronized Object get(String kind, String userId, long from, long to) {
+        Object v = entries.get(new Key(kind, userId, from, to, false));
+        if (v != null) hits++;
+        else misses++;
+        return v;
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    // Store a loaded value unless a write invalidated the cache since 'loadVersion' was read
+    public synchronized void put(long loadVersion, String kind, String userId, long from, long to, boolean userWide, Object value) {
+        if (value == null || loadVersion != version) return;
+        entries.put(new Key(kind, userId, from, to, userWide), value);
+    }
+
+    public synchronized void invalidate(TransactionChange change) {
+        version++;
+        Iterator<Key> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            Key k = it.next();
+            boolean stale = k.userWide ? change.affectsUser(k.userId) : change.affects(k.userId, k.from, k.to);
+            if (stale) {
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        version++;
+        evictions += entries.size();
+        entries.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "size=" + entries.size() + " hits=" + hits + " misses=" + misses + " evictions=" + evictions;
+    }
+
+    private static final class Key {
+        final String kind;
+        final String userId;
+        final long from;
+        final long to;
+        // not part of equality: how the entry is invalidated
+        final boolean userWide;
+
+        Key(String kind, String userId, long from, long to, boolean userWide) {
+            this.kind = kind;
+            this.userId = userId;
+            this.from = from;
+            this.to = to;
+            this.userWide = userWide;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return from == k.from && to == k.to && kind.equals(k.kind) && Objects.equals(userId, k.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, userId, from, to);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package net.tiramisu.mdp.repo;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-operation queue wait times for repository work (time from submit until a worker picks it up).
+public class QueueMetrics {
+    private final ConcurrentHashMap<String, Stat> stats = new ConcurrentHashMap<>();
+
+    static final class Stat {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalWaitNanos = new LongAdder();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+    }
+
+    void record(String op, long waitNanos) {
+        Stat s = stats.computeIfAbsent(op, k -> new Stat());
+        s.count.increment();
+        s.totalWaitNanos.add(waitNanos);
+        s.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    // op -> "count=N avgWait=Xms maxWait=Yms", sorted by op name
+    public Map<String, String> snapshot() {
+        Map<String, String> out = new TreeMap<>();
+        for (Map.Entry<String, Stat> e : stats.entrySet()) {
+            Stat s = e.getValue();
+            long n = s.count.sum();
+            double avgMs = n == 0 ? 0.0 : s.totalWaitNanos.sum() / (double) n / TimeUnit.MILLISECONDS.toNanos(1);
+            double maxMs = s.maxWaitNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+            out.put(e.getKey(), String.format(Locale.ROOT, "count=%d avgWait=%.2fms maxWait=%.2fms", n, avgMs, maxMs));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,16 @@
+package net.tiramisu.mdp.repo;
+
+import java.util.concurrent.CompletableFuture;
+
+// Where signed-in users' base balances live (Firestore users/{uid}.balance in the app).
+// Kept behind an interface so the balance logic can be tested against an in-memory fake.
+public interface RemoteBalanceSource {
+    // Current balance; 0 if the user has none stored yet
+    CompletableFuture<Double> fetch(String uid);
+
+    // Add delta atomically on the server, without reading the value first
+    CompletableFuture<Void> increment(String uid, double delta);
+
+    // Overwrite the balance (the user entered a new value)
+    CompletableFuture<Void> set(String uid, double balance);
+}
@@ -0,0 +1,115 @@
+package net.tiramisu.mdp.repo;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// Ties repository futures to a LifecycleOwner (usually a fragment's view lifecycle).
+// Everything tracked is cancelled when the owner is destroyed, and a request started under a key
+// cancels the previous one with the same key. A cancelled future is skipped by the repository if
+// it is still queued, and results delivered through the scope never reach a dead or stale UI.
+public class RequestScope {
+    private final Map<String, CompletableFuture<?>> byKey = new HashMap<>();
+    private final Set<CompletableFuture<?>> inFlight = new HashSet<>();
+    private boolean destroyed;
+
+    private RequestScope() {
+    }
+
+    @MainThread
+    public static RequestScope of(@NonNull LifecycleOwner owner) {
+        final RequestScope scope = new RequestScope();
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            scope.destroyed = true;
+            return scope;
+        }
+        lifecycle.addObserver((LifecycleEventObserver) (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) scope.destroy();
+        });
+        return scope;
+    }
+
+    // Cancel the future if the owner goes away before it completes
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        synchronized (this) {
+            if (destroyed) {
+                future.cancel(false);
+                return future;
+            }
+            inFlight.add(future);
+        }
+        future.whenComplete((v, t) -> forget(null, future));
+        return future;
+    }
+
+    // Same as track(future), and cancel whatever was previously tracked under key
+    public <T> CompletableFuture<T> track(@NonNull String key, CompletableFuture<T> future) {
+        CompletableFuture<?> previous;
+        synchronized (this) {
+            if (destroyed) {
+                future.cancel(false);
+                return future;
+            }
+            previous = byKey.put(key, future);
+            inFlight.add(future);
+        }
+        if (previous != null && previous != future) previous.cancel(false);
+        future.whenComplete((v, t) -> forget(key, future));
+        return future;
+    }
+
+    // Track the future under key and hand its result to callback on the main thread, unless the
+    // request was superseded or the owner destroyed in the meantime. Failures are dropped, like the
+    // callback-style repository API does.
+    public <T> void deliver(@NonNull String key, CompletableFuture<T> future, @NonNull Consumer<T> callback) {
+        track(key, future).thenAcceptAsync(value -> {
+            if (isActive(key, future)) callback.accept(value);
+        }, TransactionRepository.mainThread());
+    }
+
+    public void cancel(@NonNull String key) {
+        CompletableFuture<?> previous;
+        synchronized (this) {
+            previous = byKey.remove(key);
+        }
+        if (previous != null) previous.cancel(false);
+    }
+
+    public boolean isDestroyed() {
+        synchronized (this) {
+            return destroyed;
+        }
+    }
+
+    private synchronized boolean isActive(String key, CompletableFuture<?> future) {
+        // the key entry is dropped on completion, so a completed future is current unless a newer one replaced it
+        CompletableFuture<?> current = byKey.get(key);
+        return !destroyed && (current == null || current == future);
+    }
+
+    private synchronized void forget(String key, CompletableFuture<?> future) {
+        inFlight.remove(future);
+        if (key != null && byKey.get(key) == future) byKey.remove(key);
+    }
+
+    private void destroy() {
+        Set<CompletableFuture<?>> pending;
+        synchronized (this) {
+            destroyed = true;
+            pending = new HashSet<>(inFlight);
+            inFlight.clear();
+            byKey.clear();
+        }
+        for (CompletableFuture<?> f : pending) f.cancel(false);
+    }
+}
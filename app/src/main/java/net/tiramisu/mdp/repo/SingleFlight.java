@@ -0,0 +1,60 @@
+package net.tiramisu.mdp.repo;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// Per-key request coalescing: while a load for a key is outstanding, callers asking for the same key
+// share its future instead of starting their own. A caller that arrives mid-load may need a newer
+// answer than that load will give, so the key is also marked for one follow-up load; any number of
+// such callers fold into that single rerun, and the shared future completes with the last result.
+class SingleFlight<V> {
+    private final Map<String, CompletableFuture<V>> inFlight = new HashMap<>();
+    private final Set<String> rerun = new HashSet<>();
+
+    CompletableFuture<V> run(final String key, final Supplier<CompletableFuture<V>> load) {
+        final CompletableFuture<V> shared;
+        synchronized (this) {
+            CompletableFuture<V> pending = inFlight.get(key);
+            if (pending != null) {
+                rerun.add(key);
+                return pending;
+            }
+            shared = new CompletableFuture<>();
+            inFlight.put(key, shared);
+        }
+        start(key, load, shared);
+        return shared;
+    }
+
+    synchronized boolean isRunning(String key) {
+        return inFlight.containsKey(key);
+    }
+
+    private void start(final String key, final Supplier<CompletableFuture<V>> load, final CompletableFuture<V> shared) {
+        CompletableFuture<V> attempt;
+        try {
+            attempt = load.get();
+        } catch (Throwable t) {
+            attempt = new CompletableFuture<>();
+            attempt.completeExceptionally(t);
+        }
+        attempt.whenComplete((v, t) -> {
+            boolean again;
+            synchronized (SingleFlight.this) {
+                again = rerun.remove(key);
+                if (!again) inFlight.remove(key);
+            }
+            if (again) {
+                // requests arrived while this load was in flight: go again under the same future
+                start(key, load, shared);
+                return;
+            }
+            if (t != null) shared.completeExceptionally(t);
+            else shared.complete(v);
+        });
+    }
+}
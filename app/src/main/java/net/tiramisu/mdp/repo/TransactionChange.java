@@ -0,0 +1,77 @@
+package net.tiramisu.mdp.repo;
+
+import net.tiramisu.mdp.model.TransactionEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// What a write changed, delivered to TransactionChangeListener so screens can patch their state
+// or skip a refresh. Changes within one notification window are merged.
+public final class TransactionChange {
+    // affected user, or null when more than one (or an unknown) user is affected
+    public final String userId;
+    // rows inserted, with their generated ids
+    public final List<TransactionEntity> inserted;
+    // ids of rows deleted
+    public final List<Long> deletedIds;
+    // inclusive timestamp range touched by the change
+    public final long minTimestamp;
+    public final long maxTimestamp;
+    // extent unknown (notifyChange, migrations, balance edits): reload everything for the user
+    public final boolean full;
+
+    private TransactionChange(String userId, List<TransactionEntity> inserted, List<Long> deletedIds,
+                              long minTimestamp, long maxTimestamp, boolean full) {
+        this.userId = userId;
+        this.inserted = Collections.unmodifiableList(inserted);
+        this.deletedIds = Collections.unmodifiableList(deletedIds);
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.full = full;
+    }
+
+    static TransactionChange inserted(List<TransactionEntity> rows) {
+        String user = rows.isEmpty() ? null : rows.get(0).userId;
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (TransactionEntity t : rows) {
+            if (user != null && !user.equals(t.userId)) user = null;
+            min = Math.min(min, t.timestamp);
+            max = Math.max(max, t.timestamp);
+        }
+        return new TransactionChange(user, new ArrayList<>(rows), new ArrayList<>(), min, max, false);
+    }
+
+    static TransactionChange deleted(String userId, List<Long> ids, long minTimestamp, long maxTimestamp) {
+        return new TransactionChange(userId, new ArrayList<>(), new ArrayList<>(ids), minTimestamp, maxTimestamp, false);
+    }
+
+    static TransactionChange full(String userId) {
+        return new TransactionChange(userId, new ArrayList<>(), new ArrayList<>(), Long.MIN_VALUE, Long.MAX_VALUE, true);
+    }
+
+    TransactionChange merge(TransactionChange other) {
+        List<TransactionEntity> ins = new ArrayList<>(inserted);
+        ins.addAll(other.inserted);
+        List<Long> del = new ArrayList<>(deletedIds);
+        del.addAll(other.deletedIds);
+        String user = userId != null && userId.equals(other.userId) ? userId : null;
+        return new TransactionChange(user, ins, del, Math.min(minTimestamp, other.minTimestamp),
+                Math.max(maxTimestamp, other.maxTimestamp), full || other.full);
+    }
+
+    public boolean affectsUser(String user) {
+        return userId == null || userId.equals(user);
+    }
+
+    // true if the change may alter data of 'user' in [from, to]
+    public boolean affects(String user, long from, long to) {
+        return affectsUser(user) && (full || (minTimestamp <= to && maxTimestamp >= from));
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionChange{user=" + userId + ", inserted=" + inserted.size() + ", deleted=" + deletedIds.size()
+                + ", range=[" + minTimestamp + ", " + maxTimestamp + "], full=" + full + "}";
+    }
+}
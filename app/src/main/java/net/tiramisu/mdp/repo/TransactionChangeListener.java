@@ -0,0 +1,6 @@
+package net.tiramisu.mdp.repo;
+
+// Receives coalesced repository changes on the main thread
+public interface TransactionChangeListener {
+    void onTransactionsChanged(TransactionChange change);
+}
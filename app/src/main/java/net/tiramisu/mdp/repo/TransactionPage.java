@@ -0,0 +1,19 @@
+package net.tiramisu.mdp.repo;
+
+import net.tiramisu.mdp.model.TransactionRow;
+
+import java.util.List;
+
+// One page of a keyset-paginated transaction list.
+public class TransactionPage {
+    public final List<TransactionRow> items;
+    // last row scanned (may be a row rejected by the filter); pass back to fetch the next page
+    public final TransactionRow cursor;
+    public final boolean hasMore;
+
+    public TransactionPage(List<TransactionRow> items, TransactionRow cursor, boolean hasMore) {
+        this.items = items;
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+}
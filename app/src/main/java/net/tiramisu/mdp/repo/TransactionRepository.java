@@ -1,42 +1,95 @@
 package net.tiramisu.mdp.repo;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MutableLiveData;
-
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.SetOptions;
 
 import net.tiramisu.mdp.db.AppDatabase;
+import net.tiramisu.mdp.db.BalanceDao;
+import net.tiramisu.mdp.db.RollupDao;
 import net.tiramisu.mdp.db.TransactionDao;
+import net.tiramisu.mdp.model.DeleteSummary;
+import net.tiramisu.mdp.model.MonthSummary;
 import net.tiramisu.mdp.model.TransactionEntity;
-
+import net.tiramisu.mdp.model.TransactionRow;
+
+import java.lang.ref.WeakReference;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 public class TransactionRepository {
+    // sort orders for paged lists (same values as the sort button modes in TransactionsFragment)
+    public static final int SORT_NEWEST = 0;
+    public static final int SORT_OLDEST = 1;
+    public static final int SORT_AMOUNT_DESC = 2;
+    public static final int SORT_AMOUNT_ASC = 3;
+
+    private static final long SLOW_QUEUE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final Pattern DATE_LIKE = Pattern.compile("[0-9/.\\-\\s]+");
+
+    private final AppDatabase db;
     private final TransactionDao dao;
-    private final Executor executor = Executors.newSingleThreadExecutor();
+    private final RollupDao rollupDao;
+    // Writes are serialized on one thread; reads run concurrently on a small pool (WAL lets
+    // readers proceed while the writer commits), so an export or a write burst cannot
+    // hold up the dashboard sums. Both queues have an interactive and a background lane:
+    // bulk jobs (export, user migration, batch inserts) run in BULK_CHUNK-row steps in the
+    // background lane, so interactive work waits for at most one step, never the whole job.
+    private static final int READ_THREADS = 3;
+    private static final int BULK_CHUNK = 500;
+    private final PriorityExecutor writeExecutor = new PriorityExecutor(1);
+    private final PriorityExecutor readExecutor = new PriorityExecutor(READ_THREADS);
+    private final QueueMetrics queueMetrics = new QueueMetrics();
     private final Context appContext;
 
-    // simple listeners - thread-safe
-    private final CopyOnWriteArrayList<Runnable> listeners = new CopyOnWriteArrayList<>();
-    // LiveData cache for user base balances
-    private final ConcurrentHashMap<String, MutableLiveData<Double>> baseLiveMap = new ConcurrentHashMap<>();
-    // track manual updates to cached base to avoid race with remote fetch
-    private final ConcurrentHashMap<String, Long> manualUpdateTs = new ConcurrentHashMap<>();
+    // change listeners; bursts of writes are coalesced into one main-thread call per listener
+    private final ChangeNotifier changeNotifier = new ChangeNotifier();
+    // recent aggregate results (sums, category sums, month list), evicted by range on writes
+    private final QueryCache queryCache = new QueryCache();
+    // Zone monthly_rollups is bucketed in (null until checked); whole-month reads use the rollups
+    // only while it matches the device zone, and sum the raw rows otherwise
+    private volatile String rollupZone;
+    private final AtomicBoolean rollupCheckQueued = new AtomicBoolean();
+    // Observable queries shared by key: every observer of the same key gets the same Room LiveData,
+    // which runs one query while any observer is active and re-runs it only when its tables change.
+    // Held weakly: an observed LiveData is kept alive by its observers' lifecycles, and once nobody
+    // holds it any more the entry is dropped
+    private final HashMap<String, WeakReference<LiveData<?>>> liveQueries = new HashMap<>();
+    // Base balances are read from the balances table only; signed-in users' rows are synced with
+    // Firestore in the background (pending changes pushed, server value pulled at most every
+    // BALANCE_PULL_INTERVAL_MS), so no screen waits on the network for its balance.
+    private static final long BALANCE_PULL_INTERVAL_MS = 30_000;
+    private final BalanceDao balanceDao;
+    private final BalanceReconciler balanceReconciler;
 
     // singleton instance
     private static volatile TransactionRepository INSTANCE;
@@ -46,7 +99,175 @@ public class TransactionRepository {
         // use application context to avoid leaking activities
         Context appCtx = context.getApplicationContext();
         this.appContext = appCtx;
-        dao = AppDatabase.getInstance(appCtx).transactionDao();
+        db = AppDatabase.getInstance(appCtx);
+        dao = db.transactionDao();
+        rollupDao = db.rollupDao();
+        balanceDao = db.balanceDao();
+        // the reconciler's row reads and updates are ordered with the other writes to balances
+        balanceReconciler = new BalanceReconciler(balanceDao, new FirestoreBalanceSource(),
+                task -> submit(writeExecutor, PriorityExecutor.Lane.BACKGROUND, "write:balanceSync", task), BALANCE_PULL_INTERVAL_MS);
+        write("importLegacyLocalBalance", this::importLegacyLocalBalance);
+        // retry pushes that did not reach the server before the app last stopped
+        write("resumeBalanceSync", () -> {
+            for (String uid : balanceDao.getPendingUserIds()) {
+                if (!"local".equals(uid)) balanceReconciler.sync(uid);
+            }
+        });
+        // month buckets in monthly_rollups are in local time; re-bucket if the device timezone changed,
+        // at start and whenever it changes while the process is alive
+        queueRollupTimezoneCheck();
+        try {
+            appCtx.registerReceiver(new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context c, Intent intent) {
+                    // results cached from rollups bucketed in the old zone are wrong from now on
+                    queryCache.clear();
+                    queueRollupTimezoneCheck();
+                }
+            }, new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED), Context.RECEIVER_NOT_EXPORTED);
+        } catch (Exception ex) {
+            Log.d("TRRepo", "timezone receiver not registered: " + ex.getMessage());
+        }
+    }
+
+    private void read(final String op, final Runnable task) {
+        submit(readExecutor, "read:" + op, task);
+    }
+
+    private void write(final String op, final Runnable task) {
+        submit(writeExecutor, "write:" + op, task);
+    }
+
+    private void submit(PriorityExecutor target, final String op, final Runnable task) {
+        submit(target, PriorityExecutor.Lane.INTERACTIVE, op, task);
+    }
+
+    private void submit(PriorityExecutor target, PriorityExecutor.Lane lane, final String op, final Runnable task) {
+        final long enqueued = System.nanoTime();
+        target.execute(lane, () -> {
+            long wait = System.nanoTime() - enqueued;
+            queueMetrics.record(op, wait);
+            if (wait > SLOW_QUEUE_WAIT_NANOS) Log.d("TRRepo", op + " waited " + TimeUnit.NANOSECONDS.toMillis(wait) + "ms in queue");
+            task.run();
+        });
+    }
+
+    // Future-returning variants of read()/write(). A future cancelled before its turn in the queue
+    // never runs; callers can combine several reads (allOf/thenCombine) so they run in parallel on
+    // the read pool and finish with the slowest one instead of the sum of all.
+    private <T> CompletableFuture<T> readAsync(final String op, final Supplier<T> task) {
+        return async(readExecutor, "read:" + op, task);
+    }
+
+    private <T> CompletableFuture<T> writeAsync(final String op, final Supplier<T> task) {
+        return async(writeExecutor, "write:" + op, task);
+    }
+
+    private <T> CompletableFuture<T> async(PriorityExecutor target, final String op, final Supplier<T> task) {
+        return async(target, op, cancelled -> task.get());
+    }
+
+    // For reads that run several queries: the task is handed a check that turns true once the future
+    // is cancelled (e.g. a search superseded by the next keystroke), so it can stop between queries.
+    private <T> CompletableFuture<T> async(PriorityExecutor target, final String op, final Function<BooleanSupplier, T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        submit(target, op, () -> {
+            if (future.isDone()) return; // cancelled while queued
+            try {
+                future.complete(task.apply(future::isDone));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    // Background job run as a chain of steps in the background lane: each step is its own queued
+    // task, so interactive work submitted meanwhile runs in between. step returns true while there is
+    // more to do; cancelling the future stops the chain at the next step.
+    private <T> CompletableFuture<T> chunked(PriorityExecutor target, final String op, final BooleanSupplier step,
+                                             final Supplier<T> result) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final Runnable[] next = new Runnable[1];
+        next[0] = () -> {
+            if (future.isDone()) return;
+            try {
+                if (step.getAsBoolean()) submit(target, PriorityExecutor.Lane.BACKGROUND, op, next[0]);
+                else future.complete(result.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        };
+        submit(target, PriorityExecutor.Lane.BACKGROUND, op, next[0]);
+        return future;
+    }
+
+    // Read through queryCache on the read pool: a hit is answered without touching the database, a
+    // miss loads and stores the result unless a write invalidated the cache in the meantime. Hits
+    // and misses both complete on a reader thread, so callbacks never run in the caller's frame.
+    // A failed load hands the caller 'fallback' but stores nothing, so the next read tries again.
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> cachedRead(final String kind, final String userId, final long from, final long to,
+                                                final boolean userWide, final T fallback, final Supplier<T> load) {
+        String op = kind.indexOf(':') < 0 ? kind : kind.substring(0, kind.indexOf(':'));
+        return readAsync(op, () -> {
+            // version first: a write between here and the load must keep its result out of the cache
+            final long version = queryCache.version();
+            Object hit = queryCache.get(kind, userId, from, to);
+            if (hit != null) return (T) hit;
+            T value;
+            try {
+                value = load.get();
+            } catch (Exception ex) {
+                Log.d("TRRepo", op + " failed: " + ex.getMessage());
+                return fallback;
+            }
+            queryCache.put(version, kind, userId, from, to, userWide, value);
+            return value;
+        });
+    }
+
+    // Every write goes through here: evict the cached results it touches right away (on the writer
+    // thread), then queue the coalesced listener notification.
+    private void publish(TransactionChange change) {
+        queryCache.invalidate(change);
+        changeNotifier.requestNotify(change);
+    }
+
+    // Callback-style API on top of the futures; the callback always runs later, on the thread that
+    // completed the read (a reader thread, cache hits included), never inside the calling method
+    private static <T> void deliver(CompletableFuture<T> future, final Consumer<T> callback) {
+        if (callback != null) future.thenAccept(callback);
+    }
+
+    // Run CPU work that goes with loaded rows (e.g. formatting them for display) on the read pool,
+    // off the main thread; cancelling the future before its turn skips it like a read
+    public <T> CompletableFuture<T> computeAsync(final String op, final Supplier<T> task) {
+        return readAsync(op, task);
+    }
+
+    // Executor for thenXxxAsync stages that touch views
+    public static Executor mainThread() {
+        return MAIN_THREAD;
+    }
+
+    private static final Executor MAIN_THREAD = new Executor() {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            if (Looper.myLooper() == Looper.getMainLooper()) command.run();
+            else handler.post(command);
+        }
+    };
+
+    // Debug checkpoint: requested vs delivered change notifications, aggregate cache hit/miss/eviction
+    // counts and queue wait statistics per operation type ("read:getPage", "write:insert", ...)
+    public void logMetrics(String checkpoint) {
+        Log.d("TRRepo", "metrics@" + checkpoint + " notify: " + changeNotifier + " cache: " + queryCache);
+        for (Map.Entry<String, String> e : queueMetrics.snapshot().entrySet()) {
+            Log.d("TRRepo", "metrics@" + checkpoint + " " + e.getKey() + " " + e.getValue());
+        }
     }
 
     public static TransactionRepository getInstance(Context context) {
@@ -64,281 +285,538 @@ public class TransactionRepository {
     }
 
     public void insert(final TransactionEntity t, Runnable callback) {
-        executor.execute(() -> {
+        CompletableFuture<Long> f = insertAsync(t);
+        if (callback != null) f.thenRun(callback);
+    }
+
+    // Completes with the new row id, or -1 if the insert failed
+    public CompletableFuture<Long> insertAsync(final TransactionEntity t) {
+        return writeAsync("insert", () -> {
+            long id = -1;
             try {
-                long id = dao.insert(t);
+                id = dao.insert(t);
+                t.id = id;
                 Log.d("TRRepo", "inserted tx id=" + id + " userId=" + t.userId + " amount=" + t.amount + " ts=" + t.timestamp);
-                // notify listeners after successful insert on main thread
-                Handler mainHandler = new Handler(Looper.getMainLooper());
-                for (Runnable r : listeners) {
-                    try {
-                        Log.d("TRRepo", "posting listener to main thread");
-                        mainHandler.post(r);
-                    } catch (Exception ignored) {}
-                }
+                publish(TransactionChange.inserted(Collections.singletonList(t)));
             } catch (Exception ex) {
                 Log.d("TRRepo", "insert failed: " + ex.getMessage());
             }
-            if (callback != null) callback.run();
+            return id;
+        });
+    }
+
+    // Insert many rows in one transaction and notify listeners once (generators, SMS imports)
+    public void insertAll(final List<TransactionEntity> list, Runnable callback) {
+        CompletableFuture<List<Long>> f = insertAllAsync(list);
+        if (callback != null) f.thenRun(callback);
+    }
+
+    // Completes with the new row ids (empty if nothing was inserted). Runs in the background lane,
+    // one transaction per BULK_CHUNK rows; a failed chunk stops the job and earlier chunks stay.
+    public CompletableFuture<List<Long>> insertAllAsync(final List<TransactionEntity> list) {
+        final List<Long> ids = new ArrayList<>();
+        final int total = list == null ? 0 : list.size();
+        final long start = System.nanoTime();
+        return chunked(writeExecutor, "write:insertAll", () -> {
+            if (ids.size() >= total) return false;
+            List<TransactionEntity> chunk = list.subList(ids.size(), Math.min(total, ids.size() + BULK_CHUNK));
+            try {
+                List<Long> chunkIds = dao.insertAll(chunk);
+                for (int i = 0; i < chunkIds.size() && i < chunk.size(); i++) chunk.get(i).id = chunkIds.get(i);
+                ids.addAll(chunkIds);
+                publish(TransactionChange.inserted(new ArrayList<>(chunk)));
+            } catch (Exception ex) {
+                Log.d("TRRepo", "insertAll failed: " + ex.getMessage());
+                return false;
+            }
+            return ids.size() < total;
+        }, () -> {
+            if (!ids.isEmpty()) Log.d("TRRepo", "inserted " + ids.size() + " txs in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+            return ids;
         });
     }
 
-    // allow registering/unregistering a listener. Listener runs on calling thread, so callers should post to UI if needed.
-    public void registerChangeListener(Runnable listener) {
+    // allow registering/unregistering a listener. Listeners run on the main thread, at most once per ~100 ms
+    // burst of writes, and receive what the burst changed.
+    public void registerChangeListener(TransactionChangeListener listener) {
         if (listener == null) return;
-        listeners.addIfAbsent(listener);
+        changeNotifier.register(listener);
     }
 
-    public void unregisterChangeListener(Runnable listener) {
+    public void unregisterChangeListener(TransactionChangeListener listener) {
         if (listener == null) return;
-        listeners.remove(listener);
+        changeNotifier.unregister(listener);
     }
 
     public void getByUser(final String userId, final Consumer<List<TransactionEntity>> callback) {
-        executor.execute(() -> {
-            List<TransactionEntity> res = null;
+        deliver(getByUserAsync(userId), callback);
+    }
+
+    // Whole history (newest first) for exports. Read in BULK_CHUNK-row keyset steps in the background
+    // lane so an export never holds a read thread for long; completes with null if a step fails.
+    public CompletableFuture<List<TransactionEntity>> getByUserAsync(final String userId) {
+        final List<TransactionEntity> out = new ArrayList<>();
+        final long[] cursor = {Long.MAX_VALUE, Long.MAX_VALUE};
+        final boolean[] failed = {false};
+        return chunked(readExecutor, "read:getByUser", () -> {
+            try {
+                List<TransactionEntity> chunk = dao.getByUserChunk(userId, cursor[0], cursor[1], BULK_CHUNK);
+                out.addAll(chunk);
+                if (chunk.size() < BULK_CHUNK) return false;
+                TransactionEntity last = chunk.get(chunk.size() - 1);
+                cursor[0] = last.timestamp;
+                cursor[1] = last.id;
+                return true;
+            } catch (Exception ex) {
+                failed[0] = true;
+                return false;
+            }
+        }, () -> failed[0] ? null : out);
+    }
+
+    // Load the next page after 'after' (null = first page) for an optional type filter and search text.
+    // Text searches go through the transactions_fts index; date-like searches ("10/2025") are matched
+    // against the formatted date while keyset pages are read, until pageSize rows match or the
+    // user's history is exhausted, so memory stays bounded either way.
+    public void getPage(final String userId, final String type, final String query, final int sortMode,
+                        final TransactionRow after, final int pageSize, final Consumer<TransactionPage> callback) {
+        deliver(getPageAsync(userId, type, query, sortMode, after, pageSize), callback);
+    }
+
+    public CompletableFuture<TransactionPage> getPageAsync(final String userId, final String type, final String query, final int sortMode, final TransactionRow after, final int pageSize) {
+        return getPageAsync(userId, type, query, sortMode, Long.MIN_VALUE, Long.MAX_VALUE, after, pageSize);
+    }
+
+    // Same, limited to rows with fromTs <= timestamp <= toTs (one month of a sectioned list). Only the
+    // date orders take a window; the amount orders ignore it.
+    public CompletableFuture<TransactionPage> getPageAsync(final String userId, final String type, final String query, final int sortMode,
+                                                           final long fromTs, final long toTs, final TransactionRow after, final int pageSize) {
+        return async(readExecutor, "read:getPage", cancelled -> {
+            String match = toFtsMatch(query);
+            Predicate<TransactionRow> filter = match == null ? literalFilter(query) : null;
+            List<TransactionRow> out = new ArrayList<>();
+            TransactionRow last = after;
+            boolean more = true;
             try {
-                res = dao.getByUser(userId);
-            } catch (Exception ignored) {}
-            if (callback != null) callback.accept(res);
+                // a literal filter may scan many chunks before the page fills; stop once superseded
+                while (out.size() < pageSize && !cancelled.getAsBoolean()) {
+                    List<TransactionRow> raw = queryPage(userId, type, match, sortMode, fromTs, toTs, last, pageSize);
+                    int consumed = 0;
+                    for (TransactionRow te : raw) {
+                        consumed++;
+                        last = te;
+                        if (filter == null || filter.test(te)) out.add(te);
+                        if (out.size() >= pageSize) break;
+                    }
+                    if (raw.size() < pageSize && consumed == raw.size()) {
+                        more = false;
+                        break;
+                    }
+                }
+            } catch (Exception ex) {
+                Log.d("TRRepo", "getPage failed: " + ex.getMessage());
+                more = false;
+            }
+            return new TransactionPage(out, last, more);
         });
     }
 
+    private List<TransactionRow> queryPage(String userId, String type, String match, int sortMode, long fromTs, long toTs,
+                                           TransactionRow after, int limit) {
+        boolean search = match != null;
+        switch (sortMode) {
+            case SORT_OLDEST: {
+                long ts = after == null ? Long.MIN_VALUE : after.timestamp;
+                long id = after == null ? Long.MIN_VALUE : after.id;
+                return search ? dao.searchPageOldestFirst(userId, type, match, fromTs, toTs, ts, id, limit)
+                        : dao.getPageOldestFirst(userId, type, fromTs, toTs, ts, id, limit);
+            }
+            case SORT_AMOUNT_DESC: {
+                double abs = after == null ? Double.MAX_VALUE : Math.abs(after.amount);
+                long id = after == null ? Long.MAX_VALUE : after.id;
+                return search ? dao.searchPageLargestFirst(userId, type, match, abs, id, limit)
+                        : dao.getPageLargestFirst(userId, type, abs, id, limit);
+            }
+            case SORT_AMOUNT_ASC: {
+                double abs = after == null ? -1.0 : Math.abs(after.amount);
+                long id = after == null ? Long.MIN_VALUE : after.id;
+                return search ? dao.searchPageSmallestFirst(userId, type, match, abs, id, limit)
+                        : dao.getPageSmallestFirst(userId, type, abs, id, limit);
+            }
+            case SORT_NEWEST:
+            default: {
+                long ts = after == null ? Long.MAX_VALUE : after.timestamp;
+                long id = after == null ? Long.MAX_VALUE : after.id;
+                return search ? dao.searchPageNewestFirst(userId, type, match, fromTs, toTs, ts, id, limit)
+                        : dao.getPageNewestFirst(userId, type, fromTs, toTs, ts, id, limit);
+            }
+        }
+    }
+
+    // Turn user input into an FTS4 prefix query ("ăn tr" -> "ăn* tr*"). The unicode61 tokenizer
+    // folds case and diacritics on both sides. Returns null for empty or date-like input.
+    static String toFtsMatch(String query) {
+        if (query == null) return null;
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        if (q.isEmpty() || DATE_LIKE.matcher(q).matches()) return null;
+        StringBuilder sb = new StringBuilder();
+        for (String token : q.split("[^\\p{L}\\p{M}\\p{N}]+")) {
+            if (token.isEmpty()) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(token).append('*');
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    // Match for input the FTS index cannot answer (dates, bare punctuation) against the list columns;
+    // null = no filter
+    private static Predicate<TransactionRow> literalFilter(String query) {
+        final String q = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (q.isEmpty()) return null;
+        final SimpleDateFormat df = new SimpleDateFormat("dd/MM/yyyy", Locale.ROOT);
+        return te -> (te.title != null && te.title.toLowerCase(Locale.ROOT).contains(q))
+                || (te.category != null && te.category.toLowerCase(Locale.ROOT).contains(q))
+                || df.format(new Date(te.timestamp)).contains(q);
+    }
+
     public void getSumIncomeInRange(final String userId, final long from, final long to, final Consumer<Double> callback) {
-        executor.execute(() -> {
-            Double v = null;
-            try { v = dao.getSumIncomeInRange(userId, from, to); } catch (Exception ignored) {}
-            if (callback != null) callback.accept(v == null ? 0.0 : v);
+        deliver(getSumIncomeInRangeAsync(userId, from, to), callback);
+    }
+
+    public CompletableFuture<Double> getSumIncomeInRangeAsync(final String userId, final long from, final long to) {
+        return cachedRead("getSumIncomeInRange", userId, from, to, false, 0.0, () -> {
+            String[] months = rollupMonths(from, to);
+            Double v = months != null ? rollupDao.getSumIncome(userId, months[0], months[1]) : dao.getSumIncomeInRange(userId, from, to);
+            return v == null ? 0.0 : v;
         });
     }
 
     public void getSumExpenseInRange(final String userId, final long from, final long to, final Consumer<Double> callback) {
-        executor.execute(() -> {
-            Double v = null;
-            try { v = dao.getSumExpenseInRange(userId, from, to); } catch (Exception ignored) {}
-            if (callback != null) callback.accept(v == null ? 0.0 : v);
+        deliver(getSumExpenseInRangeAsync(userId, from, to), callback);
+    }
+
+    public CompletableFuture<Double> getSumExpenseInRangeAsync(final String userId, final long from, final long to) {
+        return cachedRead("getSumExpenseInRange", userId, from, to, false, 0.0, () -> {
+            String[] months = rollupMonths(from, to);
+            Double v = months != null ? rollupDao.getSumExpense(userId, months[0], months[1]) : dao.getSumExpenseInRange(userId, from, to);
+            return v == null ? 0.0 : v;
         });
     }
 
     public void getSumAllInRange(final String userId, final long from, final long to, final Consumer<Double> callback) {
-        executor.execute(() -> {
-            Double v = null;
-            try { v = dao.getSumAllInRange(userId, from, to); } catch (Exception ignored) {}
-            if (callback != null) callback.accept(v == null ? 0.0 : v);
+        deliver(getSumAllInRangeAsync(userId, from, to), callback);
+    }
+
+    public CompletableFuture<Double> getSumAllInRangeAsync(final String userId, final long from, final long to) {
+        return cachedRead("getSumAllInRange", userId, from, to, false, 0.0, () -> {
+            String[] months = rollupMonths(from, to);
+            Double v = months != null ? rollupDao.getSumAll(userId, months[0], months[1]) : dao.getSumAllInRange(userId, from, to);
+            return v == null ? 0.0 : v;
         });
     }
 
+    // Moves rows BULK_CHUNK at a time in the background lane; listeners get one full change at the end
     public void migrateUserId(final String oldUserId, final String newUserId, final Runnable callback) {
-        executor.execute(() -> {
-            try { dao.migrateUserId(oldUserId, newUserId); } catch (Exception ignored) {}
+        final int[] moved = {0};
+        chunked(writeExecutor, "write:migrateUserId", () -> {
+            try {
+                int n = dao.migrateUserIdChunk(oldUserId, newUserId, BULK_CHUNK);
+                moved[0] += n;
+                return n == BULK_CHUNK;
+            } catch (Exception ignored) {
+                return false;
+            }
+        }, () -> {
+            if (moved[0] > 0) publish(TransactionChange.full(null));
+            return null;
+        }).thenRun(() -> {
             if (callback != null) callback.run();
         });
     }
 
-    public void getNewestTransactions(final String userId, final int limit, final Consumer<List<TransactionEntity>> callback) {
-        executor.execute(() -> {
-            List<TransactionEntity> res = null;
-            try {
-                // getByUser returns all ordered desc; we can slice to limit
-                res = dao.getByUser(userId);
-                if (res != null && res.size() > limit) res = res.subList(0, limit);
-            } catch (Exception ignored) {}
-            if (callback != null) callback.accept(res);
-        });
+    public void getNewestTransactions(final String userId, final int limit, final Consumer<List<TransactionRow>> callback) {
+        deliver(getNewestTransactionsAsync(userId, limit), callback);
+    }
+
+    public CompletableFuture<List<TransactionRow>> getNewestTransactionsAsync(final String userId, final int limit) {
+        // a failed read completes the future exceptionally instead of handing back null
+        return readAsync("getNewestTransactions", () -> dao.getNewest(userId, limit));
     }
 
     // Get sums grouped by category in a time range
     public void getCategorySumsInRange(final String userId, final long from, final long to, final Consumer<List<net.tiramisu.mdp.model.CategorySum>> callback) {
-        executor.execute(() -> {
-            List<net.tiramisu.mdp.model.CategorySum> res = null;
-            try { res = dao.getCategorySumsInRange(userId, from, to); } catch (Exception ignored) {}
-            if (callback != null) callback.accept(res);
+        deliver(getCategorySumsInRangeAsync(userId, from, to), callback);
+    }
+
+    public CompletableFuture<List<net.tiramisu.mdp.model.CategorySum>> getCategorySumsInRangeAsync(final String userId, final long from, final long to) {
+        return cachedRead("getCategorySumsInRange", userId, from, to, false, new ArrayList<>(), () -> {
+            String[] months = rollupMonths(from, to);
+            return months != null ? rollupDao.getCategorySums(userId, months[0], months[1]) : dao.getCategorySumsInRange(userId, from, to);
         });
     }
 
-    // Get earliest transaction timestamp for a user
-    public void getMinTimestampForUser(final String userId, final Consumer<Long> callback) {
-        executor.execute(() -> {
-            Long v = null;
-            try { v = dao.getMinTimestampForUser(userId); } catch (Exception ignored) {}
-            if (callback != null) callback.accept(v);
+    // Months with data, newest first, with per-month income/expense (for the Statistics month picker)
+    public void getMonthSummaries(final String userId, final Consumer<List<MonthSummary>> callback) {
+        deliver(getMonthSummariesAsync(userId), callback);
+    }
+
+    public CompletableFuture<List<MonthSummary>> getMonthSummariesAsync(final String userId) {
+        return cachedRead("getMonthSummaries", userId, 0, 0, true, new ArrayList<>(), () -> rollupDao.getMonthSummaries(userId));
+    }
+
+    // Recompute monthly_rollups from the raw rows (e.g. after a migration or import)
+    public void rebuildRollups(final Runnable callback) {
+        submit(writeExecutor, PriorityExecutor.Lane.BACKGROUND, "write:rebuildRollups", () -> {
+            try { rollupDao.rebuild(); } catch (Exception ex) {
+                Log.d("TRRepo", "rebuildRollups failed: " + ex.getMessage());
+            }
+            queryCache.clear();
+            if (callback != null) callback.run();
+        });
+    }
+
+    // At most one check waits in the queue; a zone change during a rebuild queues another
+    private void queueRollupTimezoneCheck() {
+        if (!rollupCheckQueued.compareAndSet(false, true)) return;
+        write("rebuildRollupsIfTimezoneChanged", () -> {
+            rollupCheckQueued.set(false);
+            rebuildRollupsIfTimezoneChanged();
+        });
+    }
+
+    private void rebuildRollupsIfTimezoneChanged() {
+        if (appContext == null) return;
+        SharedPreferences sp = appContext.getSharedPreferences("mdp_local", Context.MODE_PRIVATE);
+        String tz = ZoneId.systemDefault().getId();
+        if (tz.equals(sp.getString("rollup_tz", null))) {
+            rollupZone = tz;
+            return;
+        }
+        try {
+            rollupDao.rebuild();
+            sp.edit().putString("rollup_tz", tz).apply();
+            rollupZone = tz;
+            // after the rebuild: a read that ran meanwhile summed raw rows or old buckets
+            queryCache.clear();
+            Log.d("TRRepo", "rebuilt monthly rollups for timezone " + tz);
+        } catch (Exception ex) {
+            Log.d("TRRepo", "rollup rebuild failed: " + ex.getMessage());
+        }
+    }
+
+    // wholeMonths() while monthly_rollups is bucketed in the device's current zone; otherwise null, so
+    // the caller sums the raw rows, and the re-bucketing is queued
+    private String[] rollupMonths(long from, long to) {
+        String[] months = wholeMonths(from, to);
+        if (months == null || ZoneId.systemDefault().getId().equals(rollupZone)) return months;
+        queueRollupTimezoneCheck();
+        return null;
+    }
+
+    // If [from, to] covers whole local-time months (from = first day 00:00, to = within the last
+    // second of a month) return the inclusive "yyyy-MM" bounds for monthly_rollups, else null.
+    static String[] wholeMonths(long from, long to) {
+        if (to < from) return null;
+        ZoneId zone = ZoneId.systemDefault();
+        ZonedDateTime start = Instant.ofEpochMilli(from).atZone(zone);
+        if (start.toInstant().toEpochMilli() != start.toLocalDate().withDayOfMonth(1).atStartOfDay(zone).toInstant().toEpochMilli()) return null;
+        LocalDate lastDay = Instant.ofEpochMilli(to).atZone(zone).toLocalDate();
+        if (lastDay.getDayOfMonth() != lastDay.lengthOfMonth()) return null;
+        long gap = lastDay.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli() - to;
+        if (gap < 1 || gap > 1000) return null;
+        return new String[]{YearMonth.from(start).toString(), YearMonth.from(lastDay).toString()};
+    }
+
+    // Full row (with note) for the detail screen; null if it no longer exists
+    public void getById(final long id, final Consumer<TransactionEntity> callback) {
+        deliver(getByIdAsync(id), callback);
+    }
+
+    public CompletableFuture<TransactionEntity> getByIdAsync(final long id) {
+        return readAsync("getById", () -> {
+            TransactionEntity res = null;
+            try { res = dao.getById(id); } catch (Exception ignored) {}
+            return res;
         });
     }
 
     // Allow external callers to notify listeners (e.g., when base balance stored outside the repo changes)
     public void notifyChange() {
-        Handler mainHandler = new Handler(Looper.getMainLooper());
-        for (Runnable r : listeners) {
-            try { mainHandler.post(r); } catch (Exception ignored) {}
-        }
-        Log.d("TRRepo", "notifyChange: posted " + listeners.size() + " listeners");
+        publish(TransactionChange.full(null));
     }
 
-    // Provide a lifecycle-aware LiveData for a user's base balance. Creates and populates the value on first use.
-    public LiveData<Double> getBaseBalanceLive(final String userId) {
-        final String key = (userId == null || userId.isEmpty()) ? "local" : userId;
-        MutableLiveData<Double> existing = baseLiveMap.get(key);
-        if (existing != null) return existing;
-        MutableLiveData<Double> ld = new MutableLiveData<>();
-        MutableLiveData<Double> prior = baseLiveMap.putIfAbsent(key, ld);
-        final MutableLiveData<Double> used = prior == null ? ld : prior;
-        // populate initial value asynchronously
-        getUserBaseBalance(key, (Double v) -> {
-            if (v == null) v = 0.0;
-            Long t = manualUpdateTs.get(key);
-            if (t != null) {
-                long age = System.currentTimeMillis() - t.longValue();
-                // if user manually updated within last 5s, don't overwrite their value
-                if (age < TimeUnit.SECONDS.toMillis(5)) {
-                    Log.d("TRRepo", "getBaseBalanceLive: skipping populate for " + key + " because manual update " + age + "ms ago");
-                    return;
-                }
+    // Income/expense of one "yyyy-MM" month, kept current by Room
+    public LiveData<MonthSummary> getMonthSummaryLive(final String userId, final String month) {
+        return sharedLive("monthSummary/" + userId + "/" + month, () -> rollupDao.observeMonthSummary(userId, month));
+    }
+
+    // Category sums over whole months ("yyyy-MM", inclusive), kept current by Room
+    public LiveData<List<net.tiramisu.mdp.model.CategorySum>> getCategorySumsLive(final String userId, final String fromMonth, final String toMonth) {
+        return sharedLive("categorySums/" + userId + "/" + fromMonth + "/" + toMonth,
+                () -> rollupDao.observeCategorySums(userId, fromMonth, toMonth));
+    }
+
+    // Newest rows of a user, kept current by Room
+    public LiveData<List<TransactionRow>> getRecentLive(final String userId, final int limit) {
+        return sharedLive("recent/" + userId + "/" + limit, () -> dao.observeNewest(userId, limit));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> LiveData<T> sharedLive(String key, Supplier<LiveData<T>> create) {
+        synchronized (liveQueries) {
+            WeakReference<LiveData<?>> ref = liveQueries.get(key);
+            LiveData<?> live = ref != null ? ref.get() : null;
+            if (live != null) return (LiveData<T>) live;
+            // purge keys whose LiveData was collected before adding a new one
+            Iterator<WeakReference<LiveData<?>>> it = liveQueries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().get() == null) it.remove();
             }
-            Log.d("TRRepo", "getBaseBalanceLive: populate " + key + " with " + v);
-            used.postValue(v);
-        });
-        return used;
-    }
-
-    // Immediately set the cached base balance LiveData for a user (useful after a local or Firestore save)
-    public void setCachedBaseBalance(final String userId, final double value) {
-        final String key = (userId == null || userId.isEmpty()) ? "local" : userId;
-        Log.d("TRRepo", "setCachedBaseBalance: user=" + key + " value=" + value);
-        MutableLiveData<Double> ld = baseLiveMap.get(key);
-        if (ld == null) {
-            MutableLiveData<Double> newLd = new MutableLiveData<>(value);
-            MutableLiveData<Double> prior = baseLiveMap.putIfAbsent(key, newLd);
-            if (prior != null) prior.postValue(value);
-        } else {
-            ld.postValue(value);
+            LiveData<T> created = create.get();
+            liveQueries.put(key, new WeakReference<>(created));
+            return created;
         }
-        manualUpdateTs.put(key, System.currentTimeMillis());
-        // Note: do not call notifyChange() here — notifying repo listeners causes fragments
-        // to re-read stored base immediately (and may overwrite this cached value while
-        // remote writes are still propagating). Observers will receive the updated value
-        // via LiveData; callers can call notifyChange() separately if they also want
-        // repo listeners to run.
     }
 
-    // Return true if the user base was manually updated within the past thresholdMs milliseconds
-    public boolean wasManuallyUpdatedRecently(final String userId, final long thresholdMs) {
-        final String key = (userId == null || userId.isEmpty()) ? "local" : userId;
-        Long t = manualUpdateTs.get(key);
-        if (t == null) return false;
-        return System.currentTimeMillis() - t.longValue() < thresholdMs;
+    private static String balanceKey(String userId) {
+        return (userId == null || userId.isEmpty()) ? "local" : userId;
+    }
+
+    // Observable base balance from the balances table (null until the user has a row). For signed-in
+    // users this also starts a background sync, which fills or refreshes the row.
+    public LiveData<Double> getBaseBalanceLive(final String userId) {
+        final String key = balanceKey(userId);
+        syncBaseBalance(key);
+        return sharedLive("baseBalance:" + key, () -> balanceDao.observeBalance(key));
+    }
+
+    // Push pending changes and refresh from Firestore if the local copy is stale; no-op for "local"
+    public void syncBaseBalance(final String userId) {
+        final String key = balanceKey(userId);
+        if (!"local".equals(key)) balanceReconciler.sync(key);
     }
 
-    // Get stored base balance for a user: for 'local' read SharedPreferences, otherwise read Firestore 'users' doc field 'balance'
+    // Stored base balance, answered from the balances table on the main thread. A signed-in user
+    // without a row yet waits for the first sync; a failed sync reports 0.
     public void getUserBaseBalance(final String userId, final Consumer<Double> callback) {
-        if (userId == null || userId.isEmpty() || "local".equals(userId)) {
-            // local stored in SharedPreferences
-            if (appContext == null) {
-                if (callback != null) callback.accept(0.0);
-                return;
-            }
-            SharedPreferences sp = appContext.getSharedPreferences("mdp_local", Context.MODE_PRIVATE);
-            double v = Double.longBitsToDouble(sp.getLong("local_balance_bits", Double.doubleToLongBits(0.0)));
-            if (callback != null) callback.accept(v);
-            return;
-        }
+        final String key = balanceKey(userId);
+        readAsync("getUserBaseBalance", () -> balanceDao.get(key)).thenCompose(row -> {
+            syncBaseBalance(key);
+            if (row != null || "local".equals(key)) return CompletableFuture.completedFuture(row);
+            return balanceReconciler.sync(key).thenCompose(v -> readAsync("getUserBaseBalance", () -> balanceDao.get(key)));
+        }).handleAsync((row, t) -> {
+            if (callback != null) callback.accept(t == null && row != null ? row.balance : 0.0);
+            return null;
+        }, mainThread());
+    }
 
-        // remote user: fetch from Firestore
-        FirebaseFirestore db = FirebaseFirestore.getInstance();
-        db.collection("users").document(userId).get().addOnSuccessListener(doc -> {
-            if (doc == null || !doc.exists()) {
-                if (callback != null) callback.accept(0.0);
-                return;
-            }
-            Object val = doc.get("balance");
-            double parsed = 0.0;
+    // The user entered a new base balance: stored locally at once, written to Firestore in the background
+    public void setUserBaseBalance(final String userId, final double value) {
+        final String key = balanceKey(userId);
+        write("setUserBaseBalance", () -> {
             try {
-                if (val instanceof Number) parsed = ((Number) val).doubleValue();
-                else {
-                    String s = val == null ? "" : val.toString();
-                    s = s.replaceAll("[^0-9.-]", "");
-                    if (!s.isEmpty()) parsed = Double.parseDouble(s);
-                }
-            } catch (Exception ignored) {}
-            if (callback != null) callback.accept(parsed);
-        }).addOnFailureListener(e -> {
-            if (callback != null) callback.accept(0.0);
+                balanceDao.set(key, value, !"local".equals(key));
+                Log.d("TRRepo", "setUserBaseBalance: user=" + key + " value=" + value);
+            } catch (Exception ex) {
+                Log.d("TRRepo", "setUserBaseBalance failed: " + ex.getMessage());
+            }
+            syncBaseBalance(key);
         });
     }
 
-    // Delete a transaction by ID and adjust the user's base balance
-    public void deleteTransaction(final long transactionId, final String userId, final double transactionAmount, final Runnable callback) {
-        executor.execute(() -> {
+    // One-time move of the signed-out balance from SharedPreferences into the balances table
+    private void importLegacyLocalBalance() {
+        if (appContext == null) return;
+        SharedPreferences sp = appContext.getSharedPreferences("mdp_local", Context.MODE_PRIVATE);
+        if (!sp.contains("local_balance_bits")) return;
+        try {
+            if (balanceDao.get("local") == null) {
+                balanceDao.set("local", Double.longBitsToDouble(sp.getLong("local_balance_bits", 0L)), false);
+            }
+            sp.edit().remove("local_balance_bits").apply();
+        } catch (Exception ex) {
+            Log.d("TRRepo", "local balance import failed: " + ex.getMessage());
+        }
+    }
+
+    // Delete one of the user's transactions by ID and adjust their base balance; the callback gets
+    // true on the main thread if the row was removed
+    public void deleteTransaction(final long transactionId, final String userId, final Consumer<Boolean> callback) {
+        CompletableFuture<Boolean> f = deleteTransactionAsync(transactionId, userId);
+        if (callback != null) f.thenAcceptAsync(callback, mainThread());
+    }
+
+    // Completes with true if the row existed, belonged to userId and was removed. The balance moves
+    // by the stored amount, not by anything the caller displayed.
+    public CompletableFuture<Boolean> deleteTransactionAsync(final long transactionId, final String userId) {
+        return writeAsync("deleteTransaction", () -> {
+            int removed = 0;
             try {
-                dao.deleteById(transactionId);
-                Log.d("TRRepo", "deleted tx id=" + transactionId + " userId=" + userId + " amount=" + transactionAmount);
+                TransactionEntity row = dao.getById(transactionId);
+                if (row == null || !row.userId.equals(balanceKey(userId))) {
+                    Log.d("TRRepo", "delete skipped: tx id=" + transactionId + " not found for userId=" + userId);
+                    return false;
+                }
+                removed = dao.deleteById(transactionId);
+                Log.d("TRRepo", "deleted tx id=" + transactionId + " userId=" + row.userId + " amount=" + row.amount + " removed=" + removed);
 
                 // Adjust the base balance: subtract the transaction amount
                 // (If it was expense (-100), subtracting -100 increases balance by 100)
                 // (If it was income (+100), subtracting +100 decreases balance by 100)
-                adjustBaseBalance(userId, -transactionAmount);
-
-                // notify listeners after successful delete on main thread
-                Handler mainHandler = new Handler(Looper.getMainLooper());
-                for (Runnable r : listeners) {
-                    try {
-                        Log.d("TRRepo", "posting listener to main thread after delete");
-                        mainHandler.post(r);
-                    } catch (Exception ignored) {}
+                // A repeated delete of the same id removes nothing and must not adjust twice.
+                if (removed > 0) {
+                    adjustBaseBalance(row.userId, -row.amount);
+                    publish(TransactionChange.deleted(row.userId,
+                            Collections.singletonList(transactionId), row.timestamp, row.timestamp));
                 }
-
-                // Also call notifyChange to ensure all listeners are triggered
-                mainHandler.post(() -> notifyChange());
             } catch (Exception ex) {
                 Log.d("TRRepo", "delete failed: " + ex.getMessage());
             }
-            if (callback != null) {
-                Handler mainHandler = new Handler(Looper.getMainLooper());
-                mainHandler.post(callback);
-            }
+            return removed > 0;
         });
     }
 
-    // Get transaction by userId, timestamp, and amount (to find transaction for deletion)
-    public void getByUserAndTimestampAndAmount(final String userId, final long timestamp, final double amount, final Consumer<TransactionEntity> callback) {
-        executor.execute(() -> {
-            TransactionEntity res = null;
+    // Delete many of the user's transactions (multi-select) in one transaction and adjust the base
+    // balance once by the total of the rows that were actually removed. The callback gets the number
+    // of removed rows on the main thread.
+    public void deleteTransactions(final List<Long> ids, final String userId, final Consumer<Integer> callback) {
+        CompletableFuture<Integer> f = deleteTransactionsAsync(ids, userId);
+        if (callback != null) f.thenAcceptAsync(callback, mainThread());
+    }
+
+    // Completes with the number of removed rows
+    public CompletableFuture<Integer> deleteTransactionsAsync(final List<Long> ids, final String userId) {
+        final String key = balanceKey(userId);
+        return writeAsync("deleteTransactions", () -> {
+            if (ids == null || ids.isEmpty()) return 0;
             try {
-                res = dao.getByUserAndTimestampAndAmount(userId, timestamp, amount);
-            } catch (Exception ignored) {}
-            if (callback != null) callback.accept(res);
+                DeleteSummary removed = dao.deleteByIdsReturningSummary(key, new ArrayList<>(ids));
+                Log.d("TRRepo", "deleted " + removed.count + "/" + ids.size() + " tx userId=" + key + " sum=" + removed.total);
+                if (removed.count > 0) {
+                    adjustBaseBalance(key, -removed.total);
+                    // only the rows that were there: unknown ids and other users' rows are not reported
+                    publish(TransactionChange.deleted(key, removed.ids, removed.minTimestamp, removed.maxTimestamp));
+                }
+                return removed.count;
+            } catch (Exception ex) {
+                Log.d("TRRepo", "bulk delete failed: " + ex.getMessage());
+                return 0;
+            }
         });
     }
 
-    // Adjust the base balance by the given delta (can be positive or negative)
+    // Adjust the base balance by the given delta (can be positive or negative). Called on the writer
+    // thread; the row changes immediately and, for signed-in users, the delta is queued as a
+    // Firestore increment.
     private void adjustBaseBalance(final String userId, final double delta) {
-        final String key = (userId == null || userId.isEmpty()) ? "local" : userId;
-
-        if ("local".equals(key)) {
-            // Update SharedPreferences for local user
-            if (appContext == null) return;
-            SharedPreferences sp = appContext.getSharedPreferences("mdp_local", Context.MODE_PRIVATE);
-            double currentBalance = Double.longBitsToDouble(sp.getLong("local_balance_bits", Double.doubleToLongBits(0.0)));
-            double newBalance = currentBalance + delta;
-            sp.edit().putLong("local_balance_bits", Double.doubleToLongBits(newBalance)).apply();
-            setCachedBaseBalance(key, newBalance);
-            Log.d("TRRepo", "adjustBaseBalance: local user, delta=" + delta + ", new balance=" + newBalance);
-        } else {
-            // Update Firestore for remote user
-            getUserBaseBalance(key, currentBalance -> {
-                double newBalance = (currentBalance != null ? currentBalance : 0.0) + delta;
-                FirebaseFirestore db = FirebaseFirestore.getInstance();
-                Map<String, Object> data = new HashMap<>();
-                data.put("balance", newBalance);
-                db.collection("users").document(key).set(data, SetOptions.merge())
-                    .addOnSuccessListener(aVoid -> {
-                        setCachedBaseBalance(key, newBalance);
-                        Log.d("TRRepo", "adjustBaseBalance: remote user=" + key + ", delta=" + delta + ", new balance=" + newBalance);
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.d("TRRepo", "adjustBaseBalance failed for user=" + key + ": " + e.getMessage());
-                    });
-            });
+        final String key = balanceKey(userId);
+        try {
+            balanceDao.adjust(key, delta, !"local".equals(key));
+            Log.d("TRRepo", "adjustBaseBalance: user=" + key + ", delta=" + delta);
+        } catch (Exception ex) {
+            Log.d("TRRepo", "adjustBaseBalance failed for user=" + key + ": " + ex.getMessage());
         }
+        syncBaseBalance(key);
     }
 
 }
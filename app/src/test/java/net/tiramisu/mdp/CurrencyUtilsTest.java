@@ -0,0 +1,165 @@
+package net.tiramisu.mdp;
+
+import android.content.SharedPreferences;
+
+import org.junit.Test;
+
+import java.text.NumberFormat;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * CurrencyUtils' cached formatters must print exactly what the previous per-call implementation
+ * printed, and must follow the currency preference and the default locale when they change.
+ * Throughput is measured on a device by CurrencyUtilsBenchmark (androidTest).
+ */
+public class CurrencyUtilsTest {
+    private static final String[] CODES = {"VND", "USD", "EUR", "CNY"};
+    private static final double[] AMOUNTS = {-50_000, 1_234_567.5, 0, 99_999_999, -3_300};
+
+    @Test
+    public void cachedFormatting_matchesPreviousOutput() {
+        for (String code : CODES) {
+            for (double amount : AMOUNTS) {
+                assertEquals(legacyFormat(amount, code), CurrencyUtils.formatCurrency(amount, code));
+            }
+        }
+    }
+
+    @Test
+    public void currencyPrefChange_changesOutput() {
+        FakePrefs prefs = new FakePrefs();
+        prefs.values.put("pref_currency", "vnd");
+        CurrencyUtils.onPreferenceChanged(prefs, "pref_currency");
+        // with the preference known, the Context is not consulted
+        String vnd = CurrencyUtils.formatCurrency(null, 1_150_000);
+        assertEquals(legacyFormat(1_150_000, "VND"), vnd);
+
+        prefs.values.put("pref_currency", "usd");
+        CurrencyUtils.onPreferenceChanged(prefs, "pref_currency");
+        String usd = CurrencyUtils.formatCurrency(null, 1_150_000);
+        assertNotEquals(vnd, usd);
+        assertEquals(legacyFormat(1_150_000, "USD"), usd);
+
+        // other keys leave the cached currency alone
+        prefs.values.put("pref_currency", "eur");
+        CurrencyUtils.onPreferenceChanged(prefs, "pref_language");
+        assertEquals(usd, CurrencyUtils.formatCurrency(null, 1_150_000));
+
+        // a cleared file reports a null key
+        prefs.values.clear();
+        CurrencyUtils.onPreferenceChanged(prefs, null);
+        assertEquals(vnd, CurrencyUtils.formatCurrency(null, 1_150_000));
+    }
+
+    @Test
+    public void unmappedCurrency_followsDefaultLocaleChange() {
+        Locale saved = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.FRANCE);
+            assertEquals(legacyFormat(1234.5, "GBP"), CurrencyUtils.formatCurrency(1234.5, "GBP"));
+            Locale.setDefault(Locale.US);
+            assertEquals(legacyFormat(1234.5, "GBP"), CurrencyUtils.formatCurrency(1234.5, "GBP"));
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+
+    // CurrencyUtils.formatWithCurrency before formatters were cached
+    static String legacyFormat(double amountInVnd, String code) {
+        Map<String, Double> rates = new HashMap<>();
+        rates.put("VND", 1.0);
+        rates.put("USD", 1.0 / 23000.0);
+        rates.put("EUR", 1.0 / 25000.0);
+        rates.put("CNY", 1.0 / 3300.0);
+        double converted = amountInVnd;
+        if (!"VND".equals(code)) {
+            Double r = rates.get(code);
+            if (r != null) converted = amountInVnd * r;
+        }
+        Locale locale;
+        switch (code) {
+            case "USD": locale = Locale.US; break;
+            case "EUR": locale = Locale.GERMANY; break;
+            case "CNY": locale = Locale.CHINA; break;
+            case "VND": locale = new Locale.Builder().setLanguage("vi").setRegion("VN").build(); break;
+            default: locale = Locale.getDefault(); break;
+        }
+        NumberFormat nf = NumberFormat.getCurrencyInstance(locale);
+        try {
+            nf.setCurrency(Currency.getInstance(code));
+        } catch (Exception ignored) {}
+        return nf.format(converted);
+    }
+
+    // Read-only SharedPreferences over a map; enough for the preference listener
+    private static final class FakePrefs implements SharedPreferences {
+        final Map<String, Object> values = new HashMap<>();
+
+        @Override
+        public Map<String, ?> getAll() {
+            return values;
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            Object v = values.get(key);
+            return v == null ? defValue : (String) v;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            Object v = values.get(key);
+            return v == null ? defValues : (Set<String>) v;
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            Object v = values.get(key);
+            return v == null ? defValue : (Integer) v;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            Object v = values.get(key);
+            return v == null ? defValue : (Long) v;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            Object v = values.get(key);
+            return v == null ? defValue : (Float) v;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            Object v = values.get(key);
+            return v == null ? defValue : (Boolean) v;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package net.tiramisu.mdp.repo;
+
+import androidx.lifecycle.LiveData;
+
+import net.tiramisu.mdp.db.BalanceDao;
+import net.tiramisu.mdp.model.BalanceEntity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BalanceReconciler against in-memory stand-ins for the balances table and Firestore. Server
+ * responses are held until the test completes them, so interleavings can be checked step by step.
+ */
+public class BalanceReconcilerTest {
+    private static final double EPS = 1e-9;
+
+    private FakeBalanceDao dao;
+    private FakeBalanceSource server;
+    private BalanceReconciler reconciler;
+    private long now = 1_000_000;
+
+    @Before
+    public void setUp() {
+        dao = new FakeBalanceDao();
+        server = new FakeBalanceSource();
+        reconciler = new BalanceReconciler(dao, server, Runnable::run, 60_000, () -> now);
+    }
+
+    @Test
+    public void concurrentSyncs_shareOneRun() {
+        server.stored.put("u", 100.0);
+        CompletableFuture<Void> a = reconciler.sync("u");
+        CompletableFuture<Void> b = reconciler.sync("u");
+        assertSame(a, b);
+        assertEquals(1, server.pendingFetches.size());
+
+        server.completeFetches();
+        // the folded request re-ran once; the row is fresh, so it did not read again
+        assertTrue(a.isDone());
+        assertEquals(1, server.fetchCount);
+        assertEquals(100.0, dao.rows.get("u").balance, EPS);
+    }
+
+    @Test
+    public void freshRow_isServedWithoutServerRead() {
+        loadBalance("u", 100.0);
+        now += 59_999;
+        reconciler.sync("u");
+        assertEquals(1, server.fetchCount);
+    }
+
+    @Test
+    public void rowOlderThanInterval_isReadAgain() {
+        loadBalance("u", 100.0);
+        server.stored.put("u", 120.0);
+        now += 60_000;
+        reconciler.sync("u");
+        assertEquals(2, server.fetchCount);
+        server.completeFetches();
+        assertEquals(120.0, dao.rows.get("u").balance, EPS);
+        assertEquals(now, dao.rows.get("u").syncedAt);
+
+        // the new read starts the interval over
+        reconciler.sync("u");
+        assertEquals(2, server.fetchCount);
+    }
+
+    @Test
+    public void adjustment_isLocalAtOnceAndPushedAsIncrement() {
+        loadBalance("u", 100.0);
+
+        dao.adjust("u", -30.0, true);
+        assertEquals(70.0, dao.rows.get("u").balance, EPS);
+
+        reconciler.sync("u");
+        // one increment and nothing else: no read of the server value before it, no overwrite
+        assertEquals(1, server.pendingIncrements.size());
+        assertEquals(1, server.fetchCount);
+        assertTrue(server.pendingSets.isEmpty());
+        server.completeIncrements();
+        assertEquals(70.0, server.stored.get("u"), EPS);
+
+        // after a push the server value is read back
+        server.completeFetches();
+        BalanceEntity row = dao.rows.get("u");
+        assertEquals(70.0, row.balance, EPS);
+        assertEquals(0.0, row.pendingDelta, EPS);
+    }
+
+    @Test
+    public void adjustmentsDuringPush_doNotLoseUpdates() {
+        loadBalance("u", 100.0);
+
+        dao.adjust("u", 50.0, true);
+        CompletableFuture<Void> done = reconciler.sync("u");
+        dao.adjust("u", -20.0, true);
+        reconciler.sync("u");
+        assertEquals(130.0, dao.rows.get("u").balance, EPS);
+
+        server.completeIncrements(); // +50
+        server.completeIncrements(); // -20, pushed by the same run
+        server.completeFetches();
+        assertTrue(done.isDone());
+        assertEquals(130.0, server.stored.get("u"), EPS);
+        assertEquals(130.0, dao.rows.get("u").balance, EPS);
+        assertEquals(0.0, dao.rows.get("u").pendingDelta, EPS);
+    }
+
+    @Test
+    public void adjustmentsFromTwoDevices_doNotLoseUpdates() {
+        loadBalance("u", 100.0);
+
+        dao.adjust("u", -30.0, true);
+        reconciler.sync("u");
+        // another device's increment lands while ours is on the wire
+        server.stored.merge("u", 40.0, Double::sum);
+        server.completeIncrements();
+        server.completeFetches();
+        assertEquals(110.0, server.stored.get("u"), EPS);
+        assertEquals(110.0, dao.rows.get("u").balance, EPS);
+    }
+
+    @Test
+    public void failedPush_staysPendingUntilNextSync() {
+        loadBalance("u", 100.0);
+        dao.adjust("u", -30.0, true);
+
+        CompletableFuture<Void> done = reconciler.sync("u");
+        server.failIncrements();
+        assertTrue(done.isDone());
+        assertEquals(70.0, dao.rows.get("u").balance, EPS);
+        assertEquals(-30.0, dao.rows.get("u").pendingDelta, EPS);
+        assertEquals(100.0, server.stored.get("u"), EPS);
+
+        reconciler.sync("u");
+        server.completeIncrements();
+        server.completeFetches();
+        assertEquals(70.0, server.stored.get("u"), EPS);
+        assertEquals(0.0, dao.rows.get("u").pendingDelta, EPS);
+    }
+
+    @Test
+    public void pullDuringLocalChange_doesNotOverwriteIt() {
+        // interval 0: every sync reads the server
+        reconciler = new BalanceReconciler(dao, server, Runnable::run, 0, () -> now);
+        loadBalance("u", 100.0);
+
+        reconciler.sync("u");
+        // the read is on the wire when a transaction is deleted locally
+        dao.adjust("u", 10.0, true);
+        reconciler.sync("u");
+        server.completeFetches();
+        assertEquals(110.0, dao.rows.get("u").balance, EPS);
+
+        // the follow-up run pushes the change, then reads the merged value
+        server.completeIncrements();
+        server.completeFetches();
+        assertEquals(110.0, server.stored.get("u"), EPS);
+        assertEquals(110.0, dao.rows.get("u").balance, EPS);
+    }
+
+    @Test
+    public void enteredBalance_overridesPendingIncrements() {
+        loadBalance("u", 100.0);
+        dao.adjust("u", -30.0, true);
+        dao.set("u", 500.0, true);
+        dao.adjust("u", 5.0, true);
+
+        reconciler.sync("u");
+        assertTrue(server.pendingIncrements.isEmpty());
+        server.completeSets();
+        server.completeFetches();
+        assertEquals(505.0, server.stored.get("u"), EPS);
+        BalanceEntity row = dao.rows.get("u");
+        assertEquals(505.0, row.balance, EPS);
+        assertFalse(row.pendingSet);
+    }
+
+    private void loadBalance(String uid, double value) {
+        server.stored.put(uid, value);
+        reconciler.sync(uid);
+        server.completeFetches();
+    }
+
+    // balances table stand-in; the default @Transaction methods of BalanceDao run on top of it
+    private static final class FakeBalanceDao implements BalanceDao {
+        final Map<String, BalanceEntity> rows = new HashMap<>();
+
+        @Override
+        public BalanceEntity get(String userId) {
+            BalanceEntity r = rows.get(userId);
+            return r == null ? null : new BalanceEntity(r.userId, r.balance, r.pendingDelta, r.pendingSet, r.version, r.syncedAt);
+        }
+
+        @Override
+        public LiveData<Double> observeBalance(String userId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> getPendingUserIds() {
+            List<String> out = new ArrayList<>();
+            for (BalanceEntity r : rows.values()) if (r.pendingSet || r.pendingDelta != 0) out.add(r.userId);
+            return out;
+        }
+
+        @Override
+        public void ensureRow(String userId) {
+            rows.putIfAbsent(userId, new BalanceEntity(userId, 0, 0, false, 0, 0));
+        }
+
+        @Override
+        public void addDelta(String userId, double delta, boolean synced) {
+            BalanceEntity r = rows.get(userId);
+            if (r == null) return;
+            r.balance += delta;
+            if (synced && !r.pendingSet) r.pendingDelta += delta;
+            r.version++;
+        }
+
+        @Override
+        public void setValue(String userId, double balance, boolean synced) {
+            BalanceEntity r = rows.get(userId);
+            if (r == null) return;
+            r.balance = balance;
+            r.pendingSet = synced;
+            r.pendingDelta = 0;
+            r.version++;
+        }
+
+        @Override
+        public void markSetPushed(String userId, long version) {
+            BalanceEntity r = rows.get(userId);
+            if (r == null || r.version != version) return;
+            r.pendingSet = false;
+            r.pendingDelta = 0;
+        }
+
+        @Override
+        public void markDeltaPushed(String userId, double delta) {
+            BalanceEntity r = rows.get(userId);
+            if (r == null || r.pendingSet) return;
+            r.pendingDelta = Math.abs(r.pendingDelta - delta) < 1e-9 ? 0 : r.pendingDelta - delta;
+        }
+
+        @Override
+        public int applyPulled(String userId, double balance, long syncedAt, long seenVersion) {
+            BalanceEntity r = rows.get(userId);
+            if (r == null || r.version != seenVersion || r.pendingSet || r.pendingDelta != 0) return 0;
+            r.balance = balance;
+            r.syncedAt = syncedAt;
+            return 1;
+        }
+    }
+
+    // Firestore stand-in: an increment is applied atomically when it completes, like FieldValue.increment
+    private static final class FakeBalanceSource implements RemoteBalanceSource {
+        final Map<String, Double> stored = new HashMap<>();
+        final List<Runnable> pendingFetches = new ArrayList<>();
+        final List<Runnable> pendingIncrements = new ArrayList<>();
+        final List<Runnable> pendingSets = new ArrayList<>();
+        final List<CompletableFuture<Void>> incrementFutures = new ArrayList<>();
+        int fetchCount;
+
+        @Override
+        public CompletableFuture<Double> fetch(String uid) {
+            fetchCount++;
+            CompletableFuture<Double> f = new CompletableFuture<>();
+            // the server reads the value when the request arrives, not when the answer is delivered
+            double snapshot = stored.getOrDefault(uid, 0.0);
+            pendingFetches.add(() -> f.complete(snapshot));
+            return f;
+        }
+
+        @Override
+        public CompletableFuture<Void> increment(String uid, double delta) {
+            CompletableFuture<Void> f = new CompletableFuture<>();
+            incrementFutures.add(f);
+            pendingIncrements.add(() -> {
+                stored.merge(uid, delta, Double::sum);
+                f.complete(null);
+            });
+            return f;
+        }
+
+        @Override
+        public CompletableFuture<Void> set(String uid, double balance) {
+            CompletableFuture<Void> f = new CompletableFuture<>();
+            pendingSets.add(() -> {
+                stored.put(uid, balance);
+                f.complete(null);
+            });
+            return f;
+        }
+
+        void completeFetches() {
+            runAll(pendingFetches);
+        }
+
+        void completeIncrements() {
+            incrementFutures.clear();
+            runAll(pendingIncrements);
+        }
+
+        void completeSets() {
+            runAll(pendingSets);
+        }
+
+        void failIncrements() {
+            pendingIncrements.clear();
+            for (CompletableFuture<Void> f : new ArrayList<>(incrementFutures)) f.completeExceptionally(new RuntimeException("offline"));
+            incrementFutures.clear();
+        }
+
+        // completing one request may issue the next one; run only those pending now
+        private static void runAll(List<Runnable> pending) {
+            List<Runnable> run = new ArrayList<>(pending);
+            pending.clear();
+            for (Runnable r : run) r.run();
+        }
+    }
+}
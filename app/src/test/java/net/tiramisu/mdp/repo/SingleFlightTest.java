@@ -0,0 +1,81 @@
+package net.tiramisu.mdp.repo;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SingleFlight with loads the test completes by hand, so the order of requests and answers is explicit.
+ */
+public class SingleFlightTest {
+    private final SingleFlight<Integer> flight = new SingleFlight<>();
+    private final List<CompletableFuture<Integer>> loads = new ArrayList<>();
+
+    private CompletableFuture<Integer> load() {
+        CompletableFuture<Integer> f = new CompletableFuture<>();
+        loads.add(f);
+        return f;
+    }
+
+    @Test
+    public void concurrentRequests_shareOneFuture() {
+        CompletableFuture<Integer> a = flight.run("k", this::load);
+        CompletableFuture<Integer> b = flight.run("k", this::load);
+        assertSame(a, b);
+        assertEquals(1, loads.size());
+    }
+
+    @Test
+    public void requestsDuringLoad_foldIntoOneRerun() {
+        CompletableFuture<Integer> a = flight.run("k", this::load);
+        flight.run("k", this::load);
+        flight.run("k", this::load);
+
+        loads.get(0).complete(1);
+        // the first answer may predate the folded requests: not delivered, one more load instead
+        assertFalse(a.isDone());
+        assertEquals(2, loads.size());
+
+        loads.get(1).complete(2);
+        assertEquals(Integer.valueOf(2), a.join());
+        assertEquals(2, loads.size());
+        assertFalse(flight.isRunning("k"));
+    }
+
+    @Test
+    public void keysAreIndependent() {
+        CompletableFuture<Integer> a = flight.run("a", this::load);
+        CompletableFuture<Integer> b = flight.run("b", this::load);
+        assertNotSame(a, b);
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    public void requestAfterCompletion_startsNewLoad() {
+        CompletableFuture<Integer> a = flight.run("k", this::load);
+        loads.get(0).complete(1);
+        CompletableFuture<Integer> b = flight.run("k", this::load);
+        assertNotSame(a, b);
+        assertEquals(2, loads.size());
+    }
+
+    @Test
+    public void failure_isSharedAndNotRemembered() {
+        CompletableFuture<Integer> a = flight.run("k", this::load);
+        loads.get(0).completeExceptionally(new RuntimeException("offline"));
+        assertTrue(a.isCompletedExceptionally());
+        assertFalse(flight.isRunning("k"));
+
+        CompletableFuture<Integer> b = flight.run("k", this::load);
+        loads.get(1).complete(3);
+        assertEquals(Integer.valueOf(3), b.join());
+    }
+}